@@ -1,8 +1,7 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -10,7 +9,7 @@ import java.util.NoSuchElementException;
  * Backend handles graph operations such as loading data, finding shortest paths,
  * and retrieving locations, using a GraphADT for storage.
  */
-public class Backend implements BackendInterface {
+public class Backend implements RouteBackendInterface {
 
   private GraphADT<String, Double> graph;
 
@@ -24,8 +23,9 @@ public class Backend implements BackendInterface {
   }
 
   /**
-   * Loads graph data from a dot file. If a graph was previously loaded, this method should first
-   * delete the contents (nodes and edges) of the existing graph before loading a new one.
+   * Loads graph data from a dot file, or from a graph file written by MappedGraph. If a graph was
+   * previously loaded, this method should first delete the contents (nodes and edges) of the
+   * existing graph before loading a new one.
    * 
    * @param filename the path to a dot file to read graph data from
    * @throws IOException if there was any problem reading from this file
@@ -33,65 +33,50 @@ public class Backend implements BackendInterface {
   @Override
   public void loadGraphData(String filename) throws IOException {
     // Clears the graph
-    List<String> allNodes = graph.getAllNodes();
-    for (String node : allNodes) {
-      graph.removeNode(node);
-    }
-
-    String line = "";
-    try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-
-      while ((line = reader.readLine()) != null) {
-        line = line.trim();
+    graph.clear();
 
-        if (line.contains("->")) {
-          String[] sides = line.split("->");
-          if (sides.length == 2) {
-            // Remove the quotes from the node
-            String pred = sides[0].trim().replaceAll("\"", "");
-            // Temp variable storing both edge and weight
-            String edgeWithWeight = sides[1].trim();
-            String[] edgeAndWeightParts = edgeWithWeight.split("\\[");
-            // remove the quotes from the edge
-            String succ = edgeAndWeightParts[0].trim().replaceAll("\"", "");
-            
-            // Getting the weight
-            String weightString = "";
-            if (edgeAndWeightParts.length > 1) {
-              weightString = edgeAndWeightParts[1];
-            }
-            // Split at the "=" sign and take the second part
-            String[] parts = weightString.split("=");
-            if (parts.length > 1) {
-              weightString = parts[1].trim();
-            }
-            weightString = weightString.replaceAll("[^\\d.]", "");
-            double weight = 0.0;
-
-	    // Making sure the weight is actually an integer, and if not throws an expection
-            try {
-              weight = Double.parseDouble(weightString);
-            } catch (NumberFormatException e) {
-              throw new IllegalArgumentException("Invalid weight in the DOT file: " + weightString);
-            }
-            
-            // Insert nodes if they do not already exist, then add the edge between them
-            if (!graph.containsNode(pred)) {
-                graph.insertNode(pred);
-            }
-            if (!graph.containsNode(succ)) {
-                graph.insertNode(succ);
-            }
-
-            graph.insertEdge(pred, succ, weight);
-          }
+    // Graph files written by MappedGraph are mapped instead of parsed
+    Path path = Paths.get(filename);
+    if (MappedGraph.isGraphFile(path)) {
+      loadGraphFile(path);
+      return;
+    }
 
-        }
-      }
+    DotParser dot;
+    try {
+      dot = DotParser.parseInParallel(path);
       //Throw any error when reading from the file
     } catch (IOException e) {
       throw new IOException("Error reading from file: " + filename);
     }
+
+    // Add the nodes in the order they first appear, so that their ids in the builder match
+    // those in the file, then the edges between them by id, and fill the graph all at once
+    GraphBuilder<String, Double> builder =
+        new GraphBuilder<>(dot.getNodeCount(), dot.getEdgeCount());
+    for (int id = 0; id < dot.getNodeCount(); id++) {
+      builder.addNode(dot.getName(id));
+    }
+    for (int edge = 0; edge < dot.getEdgeCount(); edge++) {
+      builder.addEdge(dot.getSource(edge), dot.getTarget(edge), dot.getWeight(edge));
+    }
+    builder.build(graph);
+  }
+
+  // loads a graph file written by MappedGraph, which DijkstraGraphs search directly
+  @SuppressWarnings("unchecked")
+  private void loadGraphFile(Path path) throws IOException {
+    MappedGraph mapped;
+    try {
+      mapped = MappedGraph.open(path);
+    } catch (IOException e) {
+      throw new IOException("Error reading from file: " + path);
+    }
+    if (graph instanceof DijkstraGraph) {
+      ((DijkstraGraph<String, Double>) graph).load(mapped);
+    } else {
+      GraphBuilder.of(mapped).build(graph);
+    }
   }
 
   /**
@@ -104,6 +89,19 @@ public class Backend implements BackendInterface {
     return graph.getAllNodes();
   }
 
+  /**
+   * Returns the shortest route from startLocation to endLocation, found with a single search.
+   * 
+   * @param startLocation the start location of the path
+   * @param endLocation   the end location of the path
+   * @return the locations along the shortest path with the walking time in seconds of each leg, or
+   *         Route.none() if no such path exists
+   */
+  @Override
+  public Route<String> findRoute(String startLocation, String endLocation) {
+    return graph.shortestRoute(startLocation, endLocation);
+  }
+
   /**
    * Return the sequence of locations along the shortest path from startLocation to endLocation, or
    * an empty list if no such path exists.
@@ -115,15 +113,8 @@ public class Backend implements BackendInterface {
    */
   @Override
   public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
-    List<String> path = graph.shortestPathData(startLocation, endLocation);
-
-    // If path is empty then returns new list
-    if (path.isEmpty()) {
-      return new ArrayList<>();
-    } else {
-      // return list with start and end location
-      return path;
-    }
+    // A route that was not found has no locations
+    return findRoute(startLocation, endLocation).getNodes();
   }
 
   /**
@@ -137,28 +128,8 @@ public class Backend implements BackendInterface {
    */
   @Override
   public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
-
-    List<String> path = findLocationsOnShortestPath(startLocation, endLocation);
-    List<Double> times = new ArrayList<>();
-
-    if(path == null || path.isEmpty()) {
-	return times;
-    }
-
-
-    for (int i = 0; i < path.size() - 1; i++) {
-        String previousNode = path.get(i);
-        String currentNode = path.get(i + 1);
-
-        // Getting the each 2 nodes from list and and putting it into times list
-        if (graph.containsEdge(previousNode, currentNode)) {
-          times.add(graph.getEdge(previousNode, currentNode));
-        } else {
-          // if no edge between two nodes on list, then no path is exists
-          return new ArrayList<>();
-        }
-      }
-    return times;
+    // A route that was not found has no legs
+    return findRoute(startLocation, endLocation).getLegCosts();
   }
 
   /**
@@ -173,55 +144,43 @@ public class Backend implements BackendInterface {
   @Override
   public List<String> getTenClosestDestinations(String startLocation)
       throws NoSuchElementException {
-       if (!graph.getAllNodes().contains(startLocation)) {
-        throw new NoSuchElementException("Starting location does not exist");
-    }
-
-    List<String> allNodes = new ArrayList<>(graph.getAllNodes());
-    List<String> closestDestinations = new ArrayList<>();
-    List<Double> costs = new ArrayList<>();
-    double cost;
-
-    // Collect destinations and their costs
-    for (int i = 0; i < allNodes.size(); i++) {
-        String location = allNodes.get(i);
-        if (!location.equals(startLocation)) {
-	    try {	
-	      cost = graph.shortestPathCost(startLocation, location);
-	    }
-	    catch(NoSuchElementException e) {
-		continue;
-	    }
-            if (cost > 0) {
-                closestDestinations.add(location);
-                costs.add(cost);
-            }
-        }
-    }
-
-    // Sort the destinations by cost using a simple bubble sort
-    for (int i = 0; i < costs.size() - 1; i++) {
-        for (int j = 0; j < costs.size() - i - 1; j++) {
-            if (costs.get(j) > costs.get(j + 1)) {
-                // Swap costs
-                double tempCost = costs.get(j);
-                costs.set(j, costs.get(j + 1));
-                costs.set(j + 1, tempCost);
+    return getClosestDestinations(startLocation, 10);
+  }
 
-                // Swap corresponding destinations
-                String tempDest = closestDestinations.get(j);
-                closestDestinations.set(j, closestDestinations.get(j + 1));
-                closestDestinations.set(j + 1, tempDest);
-            }
-        }
+  /**
+   * Returns a list of the k closest destinations that can be reached most quickly when starting
+   * from the specified startLocation, ordered from closest to farthest. This takes a single search
+   * that stops once the k closest destinations have been found. Locations that take no time to
+   * reach (over edges that weigh nothing) are not destinations, and the search goes on past them.
+   * 
+   * @param startLocation the location to find the closest destinations from
+   * @param k             the maximum number of destinations to return
+   * @return the k closest destinations from the specified startLocation
+   * @throws NoSuchElementException if startLocation does not exist
+   */
+  public List<String> getClosestDestinations(String startLocation, int k)
+      throws NoSuchElementException {
+    if (!graph.containsNode(startLocation)) {
+      throw new NoSuchElementException("Starting location does not exist");
     }
 
-    // Return the top 10 closest destinations
-    List<String> closestTenDestinations = new ArrayList<>();
-    for (int i = 0; i < closestDestinations.size() && i < 10; i++) {
-        closestTenDestinations.add(closestDestinations.get(i));
+    // The tree holds the start location, the locations that take no time to reach from it, and
+    // then the k closest destinations, so it is searched again with room for any such locations
+    // found beyond the first k
+    int limit = k + 1;
+    while (true) {
+      ShortestPathTree<String> tree = graph.shortestPathTree(startLocation, limit);
+      List<String> closestDestinations = new ArrayList<>(k);
+      int skipped = 0;
+      for (int i = 1; i < tree.size() && closestDestinations.size() < k; i++) {
+        if (tree.getCostAt(i) > 0)
+          closestDestinations.add(tree.getNodeAt(i));
+        else
+          skipped++;
+      }
+      if (closestDestinations.size() == k || tree.size() < limit)
+        return closestDestinations;
+      limit = k + 1 + skipped;
     }
-
-    return closestTenDestinations;
- }
+  }
 }
@@ -1,7 +1,13 @@
 import org.junit.jupiter.api.Test;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Assertions;
 
 public class BackendTests {
@@ -146,16 +152,34 @@ public class BackendTests {
         graph.insertNode("X");
         graph.insertNode("Y");
 
-        try {
-        // Generate HTML response from frontend (this should throw the exception)
-        frontend.generateShortestPathResponseHTML("X", "Y");
-
-        // If exception is not thrown, fail the test
-        Assertions.fail("Expected NoSuchElementException, but it was not thrown.");
-	} catch (NoSuchElementException e) {
-        // Validate that the exception message is correct
-        Assertions.assertEquals("No path exists between X and Y", e.getMessage());
-	}
+        // Generate HTML response from frontend, which reports that no path exists
+        String htmlResponse = frontend.generateShortestPathResponseHTML("X", "Y");
+        Assertions.assertEquals("<p>Path from X to Y not found.</p>", htmlResponse);
+        Assertions.assertFalse(backend.findRoute("X", "Y").isFound());
+        Assertions.assertTrue(backend.findLocationsOnShortestPath("X", "Y").isEmpty());
+    }
+
+    /**
+     * Test that a route carries the locations, leg times and total time of a path.
+     */
+    @Test
+    public void testFindRoute() {
+        GraphADT<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        graph.insertEdge("A", "B", 3.0);
+        graph.insertEdge("B", "C", 4.5);
+        graph.insertEdge("A", "C", 9.0);
+
+        Route<String> route = backend.findRoute("A", "C");
+        Assertions.assertTrue(route.isFound());
+        Assertions.assertEquals(List.of("A", "B", "C"), route.getNodes());
+        Assertions.assertEquals(List.of(3.0, 4.5), route.getLegCosts());
+        Assertions.assertEquals(7.5, route.getTotalCost());
+        Assertions.assertEquals(List.of(3.0, 4.5), backend.findTimesOnShortestPath("A", "C"));
     }
 
     /**
@@ -198,5 +222,171 @@ public class BackendTests {
 
         Assertions.assertTrue(htmlResponse.contains("Shortest path from A to C:"));
         Assertions.assertTrue(htmlResponse.contains("7.0 seconds")); // Path: A -> B -> C
-    } 
+    }
+
+    /**
+     * Test that the closest destinations are ordered by walking time and limited to k.
+     */
+    @Test
+    public void testClosestDestinationsOrderedAndBounded() {
+        GraphADT<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        graph.insertNode("D");
+        graph.insertEdge("A", "B", 9.0);
+        graph.insertEdge("A", "C", 2.0);
+        graph.insertEdge("C", "D", 3.0);
+
+        Assertions.assertEquals(List.of("C", "D", "B"), backend.getTenClosestDestinations("A"));
+        Assertions.assertEquals(List.of("C", "D"), backend.getClosestDestinations("A", 2));
+        Assertions.assertThrows(NoSuchElementException.class,
+            () -> backend.getClosestDestinations("Z", 2));
+
+        // Locations that take no time to reach are left out, even beyond the first k
+        graph.insertNode("E");
+        graph.insertNode("F");
+        graph.insertEdge("A", "E", 0.0);
+        graph.insertEdge("E", "F", 0.0);
+        Assertions.assertEquals(List.of("C", "D"), backend.getClosestDestinations("A", 2));
+        Assertions.assertEquals(List.of("C", "D", "B"), backend.getTenClosestDestinations("A"));
+    }
+
+    /**
+     * Test that identical route requests made while one is in progress share its search.
+     */
+    @Test
+    public void testConcurrentRoutesAreCoalesced() throws Exception {
+        GraphADT<String, Double> graph = new DijkstraGraph<>();
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertEdge("A", "B", 4.0);
+        AtomicInteger searches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        // a backend whose searches wait until they are released
+        Backend slow = new Backend(graph) {
+            @Override
+            public Route<String> findRoute(String start, String end) {
+                searches.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.findRoute(start, end);
+            }
+        };
+        CoalescingBackend backend = new CoalescingBackend(slow);
+
+        List<List<String>> results = Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[5];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(
+                () -> results.add(backend.findLocationsOnShortestPath("A", "B")));
+            threads[i].start();
+            // wait for the first search to start, then for each later request to join it
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((searches.get() == 0 || backend.getCoalescedCount() < i)
+                && System.currentTimeMillis() < deadline)
+                Thread.sleep(1);
+        }
+        release.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        Assertions.assertEquals(1, searches.get());
+        Assertions.assertEquals(5, backend.getRequestCount());
+        Assertions.assertEquals(4, backend.getCoalescedCount());
+        for (List<String> result : results)
+            Assertions.assertEquals(List.of("A", "B"), result);
+
+        // a request made after the search finished runs a new one
+        Assertions.assertEquals(List.of(4.0), backend.findTimesOnShortestPath("A", "B"));
+        Assertions.assertEquals(2, searches.get());
+        Assertions.assertThrows(NoSuchElementException.class,
+            () -> backend.getTenClosestDestinations("Z"));
+    }
+
+    /**
+     * Tests that DOT files are read with quoted, escaped and bare names, that lines without an
+     * edge are skipped, and that an edge without a valid weight is rejected.
+     */
+    @Test
+    public void testLoadDotSyntax() throws IOException {
+        Path file = Files.createTempFile("syntax", ".dot");
+        try {
+            Files.writeString(file, "digraph campus {\n"
+                + "  // \"Commented\" -> \"Out\" [seconds=1.0];\n"
+                + "\t\"Bascom Hall\" -> \"Say \\\"Cheese\\\"\" [seconds=12.25];\r\n"
+                + "  Lot_36->\"Bascom Hall\" [ seconds = 156.49999999999997 ];\n"
+                + "  \"Say \\\"Cheese\\\"\" -> Lot_36 [seconds=\"7\", color=red];\n"
+                + "}\n");
+            DotParser dot = DotParser.parse(file);
+            Assertions.assertEquals(3, dot.getNodeCount());
+            Assertions.assertEquals(3, dot.getEdgeCount());
+            Assertions.assertEquals("Bascom Hall", dot.getName(0));
+            Assertions.assertEquals("Say \"Cheese\"", dot.getName(1));
+            Assertions.assertEquals("Lot_36", dot.getName(2));
+            Assertions.assertEquals(2, dot.getSource(1));
+            Assertions.assertEquals(0, dot.getTarget(1));
+            Assertions.assertEquals(12.25, dot.getWeight(0));
+            Assertions.assertEquals(156.49999999999997, dot.getWeight(1));
+            Assertions.assertEquals(7.0, dot.getWeight(2));
+
+            DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+            Backend backend = new Backend(graph);
+            backend.loadGraphData(file.toString());
+            Assertions.assertEquals(List.of("Lot_36", "Bascom Hall", "Say \"Cheese\""),
+                backend.findLocationsOnShortestPath("Lot_36", "Say \"Cheese\""));
+
+            Files.writeString(file, "digraph campus {\n  A -> B [seconds=fast];\n}\n");
+            Assertions.assertThrows(IllegalArgumentException.class,
+                () -> backend.loadGraphData(file.toString()));
+            Files.writeString(file, "digraph campus {\n  A -> B;\n}\n");
+            Assertions.assertThrows(IllegalArgumentException.class,
+                () -> backend.loadGraphData(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that reading a DOT file in parallel chunks gives the same nodes and edges whatever the
+     * chunk size, with a repeated edge keeping its first position and last weight.
+     */
+    @Test
+    public void testLoadDotInParallel() throws IOException {
+        Path file = Files.createTempFile("chunks", ".dot");
+        try {
+            StringBuilder dot = new StringBuilder("digraph campus {\n");
+            for (int i = 0; i < 200; i++)
+                dot.append("  \"L").append(i % 10).append("\" -> \"L").append(i % 4)
+                    .append("\" [seconds=").append(i).append("];\n");
+            Files.writeString(file, dot.append("}\n").toString());
+
+            DotParser expected = DotParser.parseInParallel(file);
+            // each of the 20 pairs of nodes appears 10 times
+            Assertions.assertEquals(10, expected.getNodeCount());
+            Assertions.assertEquals(20, expected.getEdgeCount());
+            Assertions.assertEquals("L0", expected.getName(expected.getSource(0)));
+            Assertions.assertEquals("L0", expected.getName(expected.getTarget(0)));
+            Assertions.assertEquals(180.0, expected.getWeight(0));
+            for (int chunkSize : new int[] {1, 7, 64, 1000}) {
+                DotParser chunked = DotParser.parseInParallel(file, chunkSize);
+                Assertions.assertEquals(expected.getNodeCount(), chunked.getNodeCount());
+                for (int id = 0; id < expected.getNodeCount(); id++)
+                    Assertions.assertEquals(expected.getName(id), chunked.getName(id));
+                Assertions.assertEquals(expected.getEdgeCount(), chunked.getEdgeCount());
+                for (int edge = 0; edge < expected.getEdgeCount(); edge++) {
+                    Assertions.assertEquals(expected.getSource(edge), chunked.getSource(edge));
+                    Assertions.assertEquals(expected.getTarget(edge), chunked.getTarget(edge));
+                    Assertions.assertEquals(expected.getWeight(edge), chunked.getWeight(edge));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
 }
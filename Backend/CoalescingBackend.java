@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A BackendInterface that passes requests on to another backend, but lets concurrent requests
+ * with the same arguments share a single computation (single flight): the first such request runs
+ * it, and every identical request that arrives before it finishes waits for and returns the same
+ * result. Shortest path requests for locations, for times and for routes between the same two
+ * locations all share one route search. Shared lists are unmodifiable.
+ */
+public class CoalescingBackend implements RouteBackendInterface {
+
+  private final BackendInterface backend;
+
+  // computations in progress, by the arguments of the request that started them
+  private final ConcurrentHashMap<List<String>, CompletableFuture<Route<String>>> routes =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, CompletableFuture<List<String>>> closest =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Creates a backend that coalesces the requests made to another.
+   *
+   * @param backend the backend that computes each result
+   */
+  public CoalescingBackend(BackendInterface backend) {
+    this.backend = backend;
+  }
+
+  @Override
+  public void loadGraphData(String filename) throws IOException {
+    backend.loadGraphData(filename);
+  }
+
+  @Override
+  public List<String> getListOfAllLocations() {
+    return backend.getListOfAllLocations();
+  }
+
+  /**
+   * Returns the shortest route from startLocation to endLocation, sharing the search with any
+   * identical request already in progress.
+   *
+   * @param startLocation the start location of the path
+   * @param endLocation   the end location of the path
+   * @return the locations along the shortest path with the walking time in seconds of each leg, or
+   *         Route.none() if no such path exists
+   */
+  @Override
+  public Route<String> findRoute(String startLocation, String endLocation) {
+    return coalesce(routes, Arrays.asList(startLocation, endLocation),
+        () -> searchRoute(startLocation, endLocation));
+  }
+
+  // asks the backend for a route, building one from its separate answers when it has no findRoute
+  private Route<String> searchRoute(String startLocation, String endLocation) {
+    if (backend instanceof RouteBackendInterface)
+      return ((RouteBackendInterface) backend).findRoute(startLocation, endLocation);
+    List<String> locations = backend.findLocationsOnShortestPath(startLocation, endLocation);
+    if (locations.isEmpty())
+      return Route.none();
+    List<Double> times = backend.findTimesOnShortestPath(startLocation, endLocation);
+    double[] legCosts = new double[times.size()];
+    double totalCost = 0.0;
+    for (int i = 0; i < legCosts.length; i++) {
+      legCosts[i] = times.get(i);
+      totalCost += legCosts[i];
+    }
+    return new Route<>(locations, legCosts, totalCost);
+  }
+
+  @Override
+  public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+    return findRoute(startLocation, endLocation).getNodes();
+  }
+
+  @Override
+  public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+    return findRoute(startLocation, endLocation).getLegCosts();
+  }
+
+  @Override
+  public List<String> getTenClosestDestinations(String startLocation)
+      throws NoSuchElementException {
+    return coalesce(closest, startLocation,
+        () -> Collections.unmodifiableList(backend.getTenClosestDestinations(startLocation)));
+  }
+
+  /**
+   * @return the number of route and closest destination requests made to this backend
+   */
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  /**
+   * @return the number of requests that shared the result of an identical request in progress,
+   *         instead of computing their own
+   */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  /**
+   * Returns the result of an identical computation that is already in progress, or otherwise runs
+   * the computation, sharing its result (or exception) with identical requests that arrive while
+   * it runs.
+   *
+   * @param inFlight    the computations in progress for this kind of request
+   * @param key         the arguments of this request
+   * @param computation computes the result of this request
+   * @return the result of the computation
+   */
+  private <K, V> V coalesce(ConcurrentHashMap<K, CompletableFuture<V>> inFlight, K key,
+      Supplier<V> computation) {
+    requests.increment();
+    CompletableFuture<V> mine = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) {
+      coalesced.increment();
+      try {
+        return running.join();
+      } catch (CompletionException e) {
+        // rethrow what the computation threw, such as a NoSuchElementException
+        if (e.getCause() instanceof RuntimeException)
+          throw (RuntimeException) e.getCause();
+        if (e.getCause() instanceof Error)
+          throw (Error) e.getCause();
+        throw e;
+      }
+    }
+    try {
+      V result = computation.get();
+      mine.complete(result);
+      return result;
+    } catch (RuntimeException | Error e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      // later requests start a new computation, since the graph may have changed by then
+      inFlight.remove(key, mine);
+    }
+  }
+}
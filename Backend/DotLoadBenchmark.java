@@ -0,0 +1,138 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Compares how long it takes to read the edges of campus.dot and of a generated DOT file with
+ * millions of edges, line by line with regular expressions and splits (as Backend once did), with
+ * DotParser in a single pass, and with DotParser in parallel chunks, and how long loading the same
+ * graphs from memory mapped graph files takes.
+ * Run with: java DotLoadBenchmark [campus.dot] [side of the generated grid]
+ */
+public class DotLoadBenchmark {
+
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) throws IOException {
+    report(Paths.get(args.length > 0 ? args[0] : "campus.dot"));
+    int side = args.length > 1 ? Integer.parseInt(args[1]) : 700;
+    Path generated = Files.createTempFile("grid", ".dot");
+    try {
+      writeGrid(generated, side, new Random(side));
+      report(generated);
+    } finally {
+      Files.delete(generated);
+    }
+  }
+
+  /**
+   * Writes a square grid of side*side locations to a DOT file, with edges in both directions
+   * between neighboring locations and random walking times.
+   *
+   * @param file   the file to write
+   * @param side   the number of locations along each side of the grid
+   * @param random the source of walking times
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeGrid(Path file, int side, Random random) throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(file)) {
+      out.write("digraph campus {\n");
+      for (int id = 0; id < side * side; id++) {
+        if (id % side + 1 < side)
+          writeBothWays(out, id, id + 1, random);
+        if (id + side < side * side)
+          writeBothWays(out, id, id + side, random);
+      }
+      out.write("}\n");
+    }
+  }
+
+  private static void writeBothWays(BufferedWriter out, int a, int b, Random random)
+      throws IOException {
+    double seconds = 30 + random.nextDouble() * 170;
+    out.write("\t\"Location " + a + "\" -> \"Location " + b + "\" [seconds=" + seconds + "];\n");
+    out.write("\t\"Location " + b + "\" -> \"Location " + a + "\" [seconds=" + seconds + "];\n");
+  }
+
+  // times each way of reading the file, a full load into a DijkstraGraph, and a load from the
+  // same graph written to a graph file
+  private static void report(Path file) throws IOException {
+    long edges = 0;
+    long regexNanos = Long.MAX_VALUE;
+    long parserNanos = Long.MAX_VALUE;
+    long parallelNanos = Long.MAX_VALUE;
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      edges = readWithRegex(file);
+      regexNanos = Math.min(regexNanos, System.nanoTime() - start);
+      start = System.nanoTime();
+      DotParser dot = DotParser.parse(file);
+      parserNanos = Math.min(parserNanos, System.nanoTime() - start);
+      if (dot.getEdgeCount() != edges)
+        throw new IllegalStateException("Read " + dot.getEdgeCount() + " edges, not " + edges);
+      start = System.nanoTime();
+      DotParser.parseInParallel(file);
+      parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+    }
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    long start = System.nanoTime();
+    new Backend(graph).loadGraphData(file.toString());
+    long loadNanos = System.nanoTime() - start;
+
+    // the same graph written to a graph file, then mapped and loaded again
+    Path binary = Files.createTempFile("graph", ".graph");
+    long openNanos;
+    long binaryLoadNanos;
+    try {
+      MappedGraph.write(graph.snapshot(), binary);
+      start = System.nanoTime();
+      MappedGraph.open(binary);
+      openNanos = System.nanoTime() - start;
+      start = System.nanoTime();
+      new Backend(new DijkstraGraph<>()).loadGraphData(binary.toString());
+      binaryLoadNanos = System.nanoTime() - start;
+    } finally {
+      Files.delete(binary);
+    }
+
+    System.out.println(file.getFileName() + " (" + Files.size(file) + " bytes, " + edges
+        + " edges), best of " + RUNS + " with " + Runtime.getRuntime().availableProcessors()
+        + " processors");
+    System.out.printf("  regex and split: %10.1f ms%n", regexNanos / 1e6);
+    System.out.printf("  DotParser:       %10.1f ms%n", parserNanos / 1e6);
+    System.out.printf("  in parallel:     %10.1f ms%n", parallelNanos / 1e6);
+    System.out.printf("  full load:       %10.1f ms%n", loadNanos / 1e6);
+    System.out.printf("  map graph file:  %10.1f ms%n", openNanos / 1e6);
+    System.out.printf("  load graph file: %10.1f ms%n", binaryLoadNanos / 1e6);
+  }
+
+  // reads each edge the way Backend.loadGraphData did before DotParser, without building a graph
+  private static long readWithRegex(Path file) throws IOException {
+    long edges = 0;
+    double total = 0.0;
+    try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.contains("->"))
+          continue;
+        String[] sides = line.split("->");
+        if (sides.length != 2)
+          continue;
+        String pred = sides[0].trim().replaceAll("\"", "");
+        String[] edgeAndWeightParts = sides[1].trim().split("\\[");
+        String succ = edgeAndWeightParts[0].trim().replaceAll("\"", "");
+        String[] parts = edgeAndWeightParts[1].split("=");
+        total += Double.parseDouble(parts[1].trim().replaceAll("[^\\d.]", ""));
+        if (!pred.isEmpty() && !succ.isEmpty())
+          edges++;
+      }
+    }
+    return total >= 0 ? edges : -1;
+  }
+}
@@ -0,0 +1,470 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the weighted edges of a graph from a DOT file in a single pass over its bytes, which are
+ * memory mapped rather than decoded into lines. Each line of the form
+ *
+ * <pre>
+ *   "Memorial Union" -> "Science Hall" [seconds=105.8];
+ * </pre>
+ *
+ * adds an edge from its first node to its second, weighted by the value of the first attribute in
+ * its brackets. Node names may be quoted (with \" for a quote inside them) or bare, and lines that
+ * do not start with an edge, such as "digraph campus {", are skipped.
+ *
+ * Node names are interned as they are read: each distinct name is kept once in a byte arena, is
+ * given the next dense id, and becomes a String only the first time it appears. Edges are recorded
+ * as parallel arrays of source ids, target ids and weights, in the order they appear in the file,
+ * and nodes are numbered in the order they first appear.
+ */
+public class DotParser {
+
+  // the most bytes mapped at once, since a single mapping cannot exceed 2GB
+  protected static final int WINDOW = 1 << 30;
+  // roughly how many bytes each task reads when parsing in parallel
+  protected static final int CHUNK_SIZE = 1 << 23;
+
+  // names of the nodes by id, and their bytes in the arena
+  protected String[] names = new String[64];
+  protected byte[] arena = new byte[1024];
+  protected int[] nameOffsets = new int[65];
+  protected int nodeCount = 0;
+  // ids of the nodes by hash of their name, stored as id+1 so that 0 marks an empty slot
+  protected int[] slots = new int[128];
+
+  protected int[] sources = new int[256];
+  protected int[] targets = new int[256];
+  protected double[] weights = new double[256];
+  protected int edgeCount = 0;
+  // while merging, the edges by hash of their nodes, stored as index+1 like the node slots
+  protected int[] edgeSlots = null;
+
+  // bytes of the name or number being read, after unescaping
+  private byte[] token = new byte[256];
+  private int tokenLength;
+
+  /**
+   * Reads every edge from a DOT file.
+   *
+   * @param file the path of the file to read
+   * @return a parser holding the nodes and edges of that file
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if an edge has no valid weight
+   */
+  public static DotParser parse(Path file) throws IOException {
+    DotParser parser = new DotParser();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        ByteBuffer buffer = map(channel, position, file);
+        parser.parse(buffer, 0, buffer.limit());
+        position += buffer.limit();
+      }
+    }
+    return parser;
+  }
+
+  /**
+   * Reads every edge from a DOT file in parallel, in chunks of CHUNK_SIZE bytes.
+   *
+   * @param file the path of the file to read
+   * @return a parser holding the nodes and edges of that file, each pair of nodes at most once
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if an edge has no valid weight
+   */
+  public static DotParser parseInParallel(Path file) throws IOException {
+    return parseInParallel(file, CHUNK_SIZE);
+  }
+
+  /**
+   * Reads every edge from a DOT file by splitting it into chunks of whole lines, reading those
+   * chunks in parallel on the common fork-join pool, each into a parser of its own, and then
+   * merging those parsers in file order. Nodes are numbered in the order they first appear in the
+   * file, just as by parse, so the result does not depend on the chunk size or on how many threads
+   * read the chunks. Unlike parse, the result holds each pair of nodes at most once: an edge that
+   * appears again keeps its first position and takes its last weight, just as
+   * BaseGraph.insertEdge updates the weight of an existing edge.
+   *
+   * @param file      the path of the file to read
+   * @param chunkSize roughly how many bytes of the file each parallel task reads
+   * @return a parser holding the nodes and edges of that file, each pair of nodes at most once
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if an edge has no valid weight
+   */
+  public static DotParser parseInParallel(Path file, int chunkSize) throws IOException {
+    DotParser merged = new DotParser();
+    merged.edgeSlots = new int[512];
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        ByteBuffer buffer = map(channel, position, file);
+        position += buffer.limit();
+        // each chunk ends just after the first line break following a multiple of chunkSize
+        int chunkCount = (buffer.limit() + chunkSize - 1) / chunkSize;
+        int[] bounds = new int[chunkCount + 1];
+        for (int i = 1; i <= chunkCount; i++) {
+          int end = Math.max(bounds[i - 1], (int) Math.min((long) i * chunkSize, buffer.limit()));
+          while (end < buffer.limit() && end > 0 && buffer.get(end - 1) != '\n')
+            end++;
+          bounds[i] = end;
+        }
+        DotParser[] chunks = new DotParser[chunkCount];
+        IntStream.range(0, chunkCount).parallel().forEach(i -> {
+          chunks[i] = new DotParser();
+          chunks[i].parse(buffer, bounds[i], bounds[i + 1]);
+        });
+        for (DotParser chunk : chunks)
+          merged.merge(chunk);
+      }
+    }
+    merged.edgeSlots = null;
+    return merged;
+  }
+
+  // maps the bytes from position up to the end of the last whole line that fits in a window
+  private static ByteBuffer map(FileChannel channel, long position, Path file) throws IOException {
+    long size = channel.size();
+    int length = (int) Math.min(WINDOW, size - position);
+    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    if (position + length < size) {
+      int end = length;
+      while (end > 0 && buffer.get(end - 1) != '\n')
+        end--;
+      if (end == 0)
+        throw new IllegalArgumentException("Line too long in the DOT file: " + file);
+      buffer.limit(end);
+    }
+    return buffer;
+  }
+
+  // adds the nodes and edges of a parser that read the lines after those read by this one,
+  // updating the weights of edges that this one already holds
+  private void merge(DotParser chunk) {
+    int[] ids = new int[chunk.nodeCount];
+    for (int id = 0; id < chunk.nodeCount; id++) {
+      int offset = chunk.nameOffsets[id];
+      ids[id] = intern(chunk.arena, offset, chunk.nameOffsets[id + 1] - offset, chunk.names[id]);
+    }
+    for (int edge = 0; edge < chunk.edgeCount; edge++) {
+      int source = ids[chunk.sources[edge]];
+      int target = ids[chunk.targets[edge]];
+      int mask = edgeSlots.length - 1;
+      int slot = edgeHash(source, target) & mask;
+      while (edgeSlots[slot] != 0
+          && (sources[edgeSlots[slot] - 1] != source || targets[edgeSlots[slot] - 1] != target))
+        slot = (slot + 1) & mask;
+      if (edgeSlots[slot] != 0) {
+        weights[edgeSlots[slot] - 1] = chunk.weights[edge];
+      } else {
+        addEdge(source, target, chunk.weights[edge]);
+        edgeSlots[slot] = edgeCount;
+        if (edgeCount * 2 > edgeSlots.length)
+          rehashEdges();
+      }
+    }
+  }
+
+  // doubles the slots of the edges, keeping them at most half full
+  private void rehashEdges() {
+    edgeSlots = new int[edgeSlots.length * 2];
+    int mask = edgeSlots.length - 1;
+    for (int edge = 0; edge < edgeCount; edge++) {
+      int slot = edgeHash(sources[edge], targets[edge]) & mask;
+      while (edgeSlots[slot] != 0)
+        slot = (slot + 1) & mask;
+      edgeSlots[slot] = edge + 1;
+    }
+  }
+
+  private static int edgeHash(int source, int target) {
+    int hash = source * 0x9e3779b1 + target;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Reads every edge from a range of whole lines within a buffer, adding them after those already
+   * read.
+   *
+   * @param buffer the bytes of a DOT file
+   * @param from   the index of the first byte of the first line to read
+   * @param to     the index just past the last line to read
+   * @throws IllegalArgumentException if an edge has no valid weight
+   */
+  public void parse(ByteBuffer buffer, int from, int to) {
+    int at = from;
+    while (at < to)
+      at = parseLine(buffer, at, to);
+  }
+
+  // reads the line starting at index at, and returns the index of the start of the next line
+  private int parseLine(ByteBuffer buffer, int at, int to) {
+    at = skipSpaces(buffer, at, to);
+    int afterSource = readId(buffer, at, to);
+    if (afterSource == at)
+      return skipLine(buffer, at, to);
+    at = skipSpaces(buffer, afterSource, to);
+    if (at + 1 >= to || buffer.get(at) != '-' || buffer.get(at + 1) != '>')
+      return skipLine(buffer, at, to);
+    int source = intern();
+
+    at = skipSpaces(buffer, at + 2, to);
+    int afterTarget = readId(buffer, at, to);
+    if (afterTarget == at)
+      return skipLine(buffer, at, to);
+    int target = intern();
+
+    // the weight is the value of the first attribute in the brackets after the target
+    at = skipSpaces(buffer, afterTarget, to);
+    double weight = Double.NaN;
+    tokenLength = 0;
+    if (at < to && buffer.get(at) == '[') {
+      while (at < to && buffer.get(at) != '=' && buffer.get(at) != ']' && buffer.get(at) != '\n')
+        at++;
+      if (at < to && buffer.get(at) == '=') {
+        at = skipSpaces(buffer, at + 1, to);
+        int afterValue = readId(buffer, at, to);
+        weight = parseWeight();
+        at = afterValue;
+      }
+    }
+    if (!(weight >= 0.0) || weight == Double.POSITIVE_INFINITY)
+      throw new IllegalArgumentException("Invalid weight in the DOT file: "
+          + new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+    addEdge(source, target, weight);
+    return skipLine(buffer, at, to);
+  }
+
+  private static int skipSpaces(ByteBuffer buffer, int at, int to) {
+    while (at < to && (buffer.get(at) == ' ' || buffer.get(at) == '\t' || buffer.get(at) == '\r'))
+      at++;
+    return at;
+  }
+
+  private static int skipLine(ByteBuffer buffer, int at, int to) {
+    while (at < to && buffer.get(at) != '\n')
+      at++;
+    return at + 1;
+  }
+
+  /**
+   * Reads a quoted or bare name (or number) into token.
+   *
+   * @return the index just past the name, or at when there is no name there
+   */
+  private int readId(ByteBuffer buffer, int at, int to) {
+    tokenLength = 0;
+    if (at < to && buffer.get(at) == '"') {
+      for (at++; at < to && buffer.get(at) != '"'; at++) {
+        byte b = buffer.get(at);
+        if (b == '\n')
+          throw new IllegalArgumentException("Unterminated name in the DOT file");
+        if (b == '\\' && at + 1 < to && buffer.get(at + 1) == '"')
+          b = buffer.get(++at);
+        append(b);
+      }
+      if (at == to)
+        throw new IllegalArgumentException("Unterminated name in the DOT file");
+      return at + 1;
+    }
+    for (; at < to && isIdByte(buffer.get(at)); at++) {
+      if (buffer.get(at) == '-' && at + 1 < to && buffer.get(at + 1) == '>')
+        break; // an arrow right after a bare name
+      append(buffer.get(at));
+    }
+    return at;
+  }
+
+  // letters, digits, underscores, and the bytes of non-ASCII characters can appear in bare
+  // names, along with the signs and points of numbers
+  private static boolean isIdByte(byte b) {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_'
+        || b == '.' || b == '-' || b == '+' || b < 0;
+  }
+
+  private void append(byte b) {
+    if (tokenLength == token.length)
+      token = Arrays.copyOf(token, token.length * 2);
+    token[tokenLength++] = b;
+  }
+
+  /**
+   * Returns the id of the node named by token, giving it the next id when it is new.
+   */
+  private int intern() {
+    return intern(token, 0, tokenLength, null);
+  }
+
+  /**
+   * Returns the id of the node named by a range of bytes, giving it the next id when it is new.
+   *
+   * @param name the String for those bytes, or null to decode them when needed
+   */
+  private int intern(byte[] bytes, int from, int length, String name) {
+    int mask = slots.length - 1;
+    for (int slot = hash(bytes, from, from + length) & mask;; slot = (slot + 1) & mask) {
+      int id = slots[slot] - 1;
+      if (id < 0)
+        return addNode(slot, bytes, from, length, name);
+      int offset = nameOffsets[id];
+      if (nameOffsets[id + 1] - offset == length
+          && Arrays.equals(arena, offset, offset + length, bytes, from, from + length))
+        return id;
+    }
+  }
+
+  private int addNode(int slot, byte[] bytes, int from, int length, String name) {
+    int id = nodeCount++;
+    if (id == names.length) {
+      names = Arrays.copyOf(names, id * 2);
+      nameOffsets = Arrays.copyOf(nameOffsets, id * 2 + 1);
+    }
+    int offset = nameOffsets[id];
+    if (offset + length > arena.length)
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, offset + length));
+    System.arraycopy(bytes, from, arena, offset, length);
+    nameOffsets[id + 1] = offset + length;
+    names[id] = name != null ? name : new String(bytes, from, length, StandardCharsets.UTF_8);
+    slots[slot] = id + 1;
+    if (nodeCount * 2 > slots.length)
+      rehash();
+    return id;
+  }
+
+  // doubles the slots, keeping them at most half full
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < nodeCount; id++) {
+      int slot = hash(arena, nameOffsets[id], nameOffsets[id + 1]) & mask;
+      while (slots[slot] != 0)
+        slot = (slot + 1) & mask;
+      slots[slot] = id + 1;
+    }
+  }
+
+  // FNV-1a hash of a range of bytes
+  private static int hash(byte[] bytes, int from, int to) {
+    int hash = 0x811c9dc5;
+    for (int i = from; i < to; i++)
+      hash = (hash ^ (bytes[i] & 0xff)) * 0x01000193;
+    return hash;
+  }
+
+  private void addEdge(int source, int target, double weight) {
+    if (edgeCount == sources.length) {
+      sources = Arrays.copyOf(sources, edgeCount * 2);
+      targets = Arrays.copyOf(targets, edgeCount * 2);
+      weights = Arrays.copyOf(weights, edgeCount * 2);
+    }
+    sources[edgeCount] = source;
+    targets[edgeCount] = target;
+    weights[edgeCount++] = weight;
+  }
+
+  // powers of ten that are exactly representable as doubles
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+      1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * Parses token as a decimal number. Numbers with at most 15 significant digits are computed
+   * directly from their digits, which rounds them exactly as Double.parseDouble does, and longer
+   * ones (or ones with an exponent) are passed on to Double.parseDouble.
+   *
+   * @return the number, or NaN when token is not one
+   */
+  private double parseWeight() {
+    long digits = 0;
+    int significant = 0;
+    int fractionDigits = 0;
+    boolean point = false;
+    boolean any = false;
+    int i = 0;
+    boolean negative = tokenLength > 0 && token[0] == '-';
+    if (tokenLength > 0 && (token[0] == '-' || token[0] == '+'))
+      i++;
+    for (; i < tokenLength; i++) {
+      byte b = token[i];
+      if (b == '.' && !point) {
+        point = true;
+      } else if (b >= '0' && b <= '9') {
+        any = true;
+        if (significant > 0 || b != '0')
+          significant++;
+        if (significant > 15)
+          return parseSlowly();
+        digits = digits * 10 + (b - '0');
+        if (point)
+          fractionDigits++;
+      } else {
+        return parseSlowly();
+      }
+    }
+    if (!any || fractionDigits >= POWERS_OF_TEN.length)
+      return any ? parseSlowly() : Double.NaN;
+    double value = digits / POWERS_OF_TEN[fractionDigits];
+    return negative ? -value : value;
+  }
+
+  private double parseSlowly() {
+    try {
+      return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.ISO_8859_1));
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * @return the number of distinct nodes read
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * @param id the id of a node, from 0 up to the number of nodes
+   * @return the name of that node
+   */
+  public String getName(int id) {
+    return names[id];
+  }
+
+  /**
+   * @return the number of edges read, counting each line with an edge once
+   */
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @param edge the index of an edge, from 0 up to the number of edges
+   * @return the id of the node that edge leaves
+   */
+  public int getSource(int edge) {
+    return sources[edge];
+  }
+
+  /**
+   * @param edge the index of an edge, from 0 up to the number of edges
+   * @return the id of the node that edge enters
+   */
+  public int getTarget(int edge) {
+    return targets[edge];
+  }
+
+  /**
+   * @param edge the index of an edge, from 0 up to the number of edges
+   * @return the weight of that edge
+   */
+  public double getWeight(int edge) {
+    return weights[edge];
+  }
+}
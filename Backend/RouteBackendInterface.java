@@ -0,0 +1,17 @@
+/**
+ * A BackendInterface that can also answer a shortest path request with a single Route, carrying
+ * the locations along the path, the walking time of each leg and the total walking time, instead
+ * of separate searches for the locations and for the times.
+ */
+public interface RouteBackendInterface extends BackendInterface {
+
+  /**
+   * Returns the shortest route from startLocation to endLocation.
+   * 
+   * @param startLocation the start location of the path
+   * @param endLocation   the end location of the path
+   * @return the locations along the shortest path with the walking time in seconds of each leg, or
+   *         Route.none() if no such path exists
+   */
+  public Route<String> findRoute(String startLocation, String endLocation);
+}
@@ -1,8 +1,32 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Frontend implements StreamingFrontendInterface {
+    // The static parts of each response, encoded once
+    private static final byte[] PATH_FROM = bytes("<p>Path from ");
+    private static final byte[] TO = bytes(" to ");
+    private static final byte[] NOT_FOUND = bytes(" not found.</p>");
+    private static final byte[] SHORTEST_PATH_FROM = bytes("<div><p>Shortest path from ");
+    private static final byte[] PATH_START = bytes(":</p><ol>");
+    private static final byte[] TOTAL_TIME = bytes("</ol><p>Total travel time: ");
+    private static final byte[] PATH_END = bytes(" seconds</p></div>");
+    private static final byte[] QUOTE = bytes("<p>\"");
+    private static final byte[] NOT_REACHABLE = bytes("\" is not reachable or does not exist.</p>");
+    private static final byte[] CLOSEST_FROM = bytes("<div><p>Ten closest destinations from ");
+    private static final byte[] CLOSEST_START = bytes(":</p><ul>");
+    private static final byte[] CLOSEST_END = bytes("</ul></div>");
+    private static final byte[] ITEM_START = bytes("<li>");
+    private static final byte[] ITEM_END = bytes("</li>");
 
-public class Frontend implements FrontendInterface {
     private BackendInterface backend;
+    private final Map<String, byte[]> encodedNames = new ConcurrentHashMap<>();
 
     public Frontend(BackendInterface backend) {
         this.backend = backend;
@@ -25,23 +49,52 @@ public class Frontend implements FrontendInterface {
 
     @Override
     public String generateShortestPathResponseHTML(String start, String end) {
-        List<String> path = backend.findLocationsOnShortestPath(start, end);
-        List<Double> times = backend.findTimesOnShortestPath(start, end);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeShortestPathResponseHTML(start, end, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by a ByteArrayOutputStream
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void writeShortestPathResponseHTML(String start, String end, OutputStream out)
+            throws IOException {
+        List<String> path;
+        double totalTime;
+        if (backend instanceof RouteBackendInterface) {
+            // One search provides both the locations and the times along the path
+            Route<String> route = ((RouteBackendInterface) backend).findRoute(start, end);
+            path = route.getNodes();
+            totalTime = route.getTotalCost();
+        } else {
+            path = backend.findLocationsOnShortestPath(start, end);
+            totalTime = backend.findTimesOnShortestPath(start, end).stream()
+                    .mapToDouble(Double::doubleValue).sum();
+        }
         if (path.isEmpty()) {
-            return "<p>Path from " + start + " to " + end + " not found.</p>";
+            out.write(PATH_FROM);
+            write(start, out);
+            out.write(TO);
+            write(end, out);
+            out.write(NOT_FOUND);
+            return;
         }
 
-        StringBuilder str = new StringBuilder("<div>");
-        str.append("<p>Shortest path from " + start + " to " + end + ":</p>");
-        str.append("<ol>");
+        out.write(SHORTEST_PATH_FROM);
+        write(start, out);
+        out.write(TO);
+        write(end, out);
+        out.write(PATH_START);
         for (String l : path) {
-            str.append("<li>" + l + "</li>");
+            out.write(ITEM_START);
+            out.write(encoded(l));
+            out.write(ITEM_END);
         }
-        str.append("</ol>");
-        str.append("<p>Total travel time: "  + times.stream().mapToDouble(Double::doubleValue).sum() + " seconds</p>");
-        str.append("</div>");
-        
-        return str.toString();
+        out.write(TOTAL_TIME);
+        write(Double.toString(totalTime), out);
+        out.write(PATH_END);
     }
 
     @Override
@@ -55,27 +108,55 @@ public class Frontend implements FrontendInterface {
 
     @Override
     public String generateTenClosestDestinationsResponseHTML(String start) {
-	try {
-	    List<String> closestDestinations = backend.getTenClosestDestinations(start);
-            // Checks if list is null or empty which indicates no destination found
-	                if (closestDestinations == null || closestDestinations.isEmpty()) {
-	      return "<p>\"" + start + "\" is not reachable or does not exist.</p>";
-            }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeTenClosestDestinationsResponseHTML(start, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by a ByteArrayOutputStream
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
 
-            StringBuilder str = new StringBuilder("<div>");
-            str.append("<p>Ten closest destinations from " + start + ":</p>");
-            str.append("<ul>");
+    @Override
+    public void writeTenClosestDestinationsResponseHTML(String start, OutputStream out)
+            throws IOException {
+        List<String> closestDestinations;
+        try {
+            closestDestinations = backend.getTenClosestDestinations(start);
+        } catch (NoSuchElementException e) {
+            closestDestinations = null;
+        }
+        // Checks if list is null or empty which indicates no destination found
+        if (closestDestinations == null || closestDestinations.isEmpty()) {
+            out.write(QUOTE);
+            write(start, out);
+            out.write(NOT_REACHABLE);
+            return;
+        }
+
+        out.write(CLOSEST_FROM);
+        write(start, out);
+        out.write(CLOSEST_START);
+        // Write each destination as a list item
+        for (String l : closestDestinations) {
+            out.write(ITEM_START);
+            out.write(encoded(l));
+            out.write(ITEM_END);
+        }
+        out.write(CLOSEST_END);
+    }
+
+    // Returns the UTF-8 bytes of a location name, encoding each name only once. Only names that
+    // come from the backend are kept, so the cache is no larger than the graph.
+    private byte[] encoded(String location) {
+        return encodedNames.computeIfAbsent(location, l -> l.getBytes(StandardCharsets.UTF_8));
+    }
 
-            // Loop through each destination in the closestDestinations list
-            for (String l : closestDestinations) {
-                str.append("<li>" + l + "</li>"); // Add each destination as a list item
-            }
-            str.append("</ul>");
-            str.append("</div>");
+    private static void write(String text, OutputStream out) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
 
-            return str.toString();
-	} catch (NoSuchElementException e) {
-	    return "<p>\"" + start + "\" is not reachable or does not exist.</p>";
-	}
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
     }
 }
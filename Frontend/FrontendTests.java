@@ -1,6 +1,9 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 
 public class FrontendTests {
@@ -36,4 +39,22 @@ public class FrontendTests {
         String result = fe.generateTenClosestDestinationsResponseHTML("Union South");
         assertTrue(result.contains("<ul>"), "There must be a <ul> tag.");
     }
+
+    @Test
+    public void streamingTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fe.writeShortestPathResponseHTML("Union South", "Atmospheric, Oceanic and Space Sciences", out);
+        assertEquals(fe.generateShortestPathResponseHTML("Union South",
+                "Atmospheric, Oceanic and Space Sciences"), out.toString(StandardCharsets.UTF_8));
+
+        out.reset();
+        fe.writeShortestPathResponseHTML("NonExistentStart", "NonExistentEnd", out);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("not found"),
+                "The response should say no path was found.");
+
+        out.reset();
+        fe.writeTenClosestDestinationsResponseHTML("Union South", out);
+        assertEquals(fe.generateTenClosestDestinationsResponseHTML("Union South"),
+                out.toString(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,30 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A FrontendInterface that can also write its responses as UTF-8 straight into a stream, such as
+ * the body of an HTTP response, instead of returning them as Strings that are then encoded.
+ */
+public interface StreamingFrontendInterface extends FrontendInterface {
+
+  /**
+   * Writes the same HTML as generateShortestPathResponseHTML(start, end).
+   *
+   * @param start the start location of the path
+   * @param end   the end location of the path
+   * @param out   the stream to write the UTF-8 encoded HTML to
+   * @throws IOException if the HTML cannot be written
+   */
+  public void writeShortestPathResponseHTML(String start, String end, OutputStream out)
+      throws IOException;
+
+  /**
+   * Writes the same HTML as generateTenClosestDestinationsResponseHTML(start).
+   *
+   * @param start the location to find the closest destinations from
+   * @param out   the stream to write the UTF-8 encoded HTML to
+   * @throws IOException if the HTML cannot be written
+   */
+  public void writeTenClosestDestinationsResponseHTML(String start, OutputStream out)
+      throws IOException;
+}
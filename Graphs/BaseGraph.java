@@ -1,5 +1,5 @@
 import java.util.List;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.NoSuchElementException;
 
 /**
@@ -11,8 +11,8 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     // Each node contains unique data along with two lists of directed edges
     protected class Node {
         public NodeType data;
-        public List<Edge> edgesLeaving = new LinkedList<>();
-        public List<Edge> edgesEntering = new LinkedList<>();
+        public List<Edge> edgesLeaving = new ArrayList<>();
+        public List<Edge> edgesEntering = new ArrayList<>();
 
         public Node(NodeType data) {
             this.data = data;
@@ -86,6 +86,51 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return true;
     }
 
+    /**
+     * Remove every node and edge from the graph. Nodes and edges are dropped
+     * along with the map that holds them, rather than removed one at a time,
+     * so with a map that replaces its table when cleared (such as
+     * ProbingHashtableMap) this takes the same time however large the graph.
+     */
+    public void clear() {
+        nodes.clear();
+        edgeCount = 0;
+    }
+
+    /**
+     * Replace every node and edge in the graph with those collected by a
+     * builder, whose duplicate edges have already been resolved. Each node's
+     * edge lists are created at their final size.
+     *
+     * @param builder the builder holding the new nodes and edges
+     */
+    protected void replaceContents(GraphBuilder<NodeType, EdgeType> builder) {
+        nodes.clear();
+        int nodeCount = builder.nodes.size();
+        int[] leaving = new int[nodeCount];
+        int[] entering = new int[nodeCount];
+        for (int edge = 0; edge < builder.edgeCount; edge++) {
+            leaving[builder.sources[edge]]++;
+            entering[builder.targets[edge]]++;
+        }
+        List<Node> byId = new ArrayList<>(nodeCount);
+        for (int id = 0; id < nodeCount; id++) {
+            Node node = new Node(builder.nodes.get(id));
+            node.edgesLeaving = new ArrayList<>(leaving[id]);
+            node.edgesEntering = new ArrayList<>(entering[id]);
+            nodes.put(node.data, node);
+            byId.add(node);
+        }
+        for (int edge = 0; edge < builder.edgeCount; edge++) {
+            Node pred = byId.get(builder.sources[edge]);
+            Node succ = byId.get(builder.targets[edge]);
+            Edge newEdge = new Edge(builder.getWeight(edge), pred, succ);
+            pred.edgesLeaving.add(newEdge);
+            succ.edgesEntering.add(newEdge);
+        }
+        edgeCount = builder.edgeCount;
+    }
+
     /**
      * Check whether the graph contains a node with the provided data.
      * 
@@ -212,6 +257,60 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
                 succ.toString());
     }
 
+    /**
+     * Create an immutable compressed sparse row snapshot of the nodes and
+     * edges currently in this graph. Later changes to this graph are not
+     * reflected in the snapshot.
+     *
+     * @return a snapshot of this graph with dense node ids
+     */
+    public CompressedGraph<NodeType> freeze() {
+        int nodeCount = nodes.getSize();
+        Object[] data = new Object[nodeCount];
+        List<Node> byId = new ArrayList<>(nodeCount);
+        MapADT<NodeType, Integer> ids = ProbingHashtableMap.withCapacity(nodeCount * 2);
+        boolean named = true;
+        for (NodeType key : nodes.getKeys()) {
+            named &= key instanceof String;
+            ids.put(key, byId.size());
+            data[byId.size()] = key;
+            byId.add(nodes.get(key));
+        }
+        // lay out the edges leaving and entering each node contiguously
+        int[] offsets = new int[nodeCount + 1];
+        int[] reverseOffsets = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            offsets[i + 1] = offsets[i] + byId.get(i).edgesLeaving.size();
+            reverseOffsets[i + 1] = reverseOffsets[i] + byId.get(i).edgesEntering.size();
+        }
+        int[] targets = new int[offsets[nodeCount]];
+        double[] weights = new double[offsets[nodeCount]];
+        int[] sources = new int[reverseOffsets[nodeCount]];
+        double[] reverseWeights = new double[reverseOffsets[nodeCount]];
+        for (int i = 0; i < nodeCount; i++) {
+            int edge = offsets[i];
+            for (Edge leaving : byId.get(i).edgesLeaving) {
+                targets[edge] = ids.get(leaving.successor.data);
+                weights[edge++] = leaving.data.doubleValue();
+            }
+            edge = reverseOffsets[i];
+            for (Edge entering : byId.get(i).edgesEntering) {
+                sources[edge] = ids.get(entering.predecessor.data);
+                reverseWeights[edge++] = entering.data.doubleValue();
+            }
+        }
+        // graphs of named nodes look their names up in a perfect hash table instead of the map
+        if (named) {
+            String[] names = new String[nodeCount];
+            for (int i = 0; i < nodeCount; i++)
+                names[i] = (String) data[i];
+            return new CompressedGraph<>(data, SymbolTable.of(names), offsets, targets,
+                    weights, reverseOffsets, sources, reverseWeights);
+        }
+        return new CompressedGraph<>(data, ids, offsets, targets, weights,
+                reverseOffsets, sources, reverseWeights);
+    }
+
     /**
      * Return the number of edges in the graph.
      * 
@@ -0,0 +1,207 @@
+/**
+ * An immutable snapshot of a BaseGraph in compressed sparse row form. Each node
+ * is given a dense int id from 0 to getNodeCount()-1. The edges leaving node u
+ * are stored at the indexes firstEdge(u) up to (but excluding) firstEdge(u+1)
+ * of the targets and weights arrays, and the edges entering node u are stored
+ * the same way in the reverse arrays, so searches can walk the edges of a node
+ * with a loop over primitive arrays instead of through lists of Edge objects.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class CompressedGraph<NodeType> {
+
+  // node data by id, and ids by node data (kept in a symbol table instead when every node's data
+  // is a String)
+  protected final Object[] data;
+  protected final MapADT<NodeType, Integer> ids;
+  protected final SymbolTable symbols;
+
+  // edges leaving each node
+  protected final int[] offsets;
+  protected final int[] targets;
+  protected final double[] weights;
+
+  // edges entering each node
+  protected final int[] reverseOffsets;
+  protected final int[] sources;
+  protected final double[] reverseWeights;
+
+  // hash of the contents of this snapshot, computed when first requested
+  private volatile long fingerprint;
+  private volatile boolean fingerprinted = false;
+
+  /**
+   * Creates a snapshot from arrays that are already in compressed sparse row form. These arrays
+   * are kept (not copied), and must not be modified afterwards.
+   *
+   * @param data           the data of each node, indexed by id
+   * @param ids            maps the data of each node to its id
+   * @param offsets        index of the first edge leaving each node, followed by the edge count
+   * @param targets        the id of the successor of each leaving edge
+   * @param weights        the weight of each leaving edge
+   * @param reverseOffsets index of the first edge entering each node, followed by the edge count
+   * @param sources        the id of the predecessor of each entering edge
+   * @param reverseWeights the weight of each entering edge
+   */
+  public CompressedGraph(Object[] data, MapADT<NodeType, Integer> ids, int[] offsets,
+      int[] targets, double[] weights, int[] reverseOffsets, int[] sources,
+      double[] reverseWeights) {
+    this(data, ids, null, offsets, targets, weights, reverseOffsets, sources, reverseWeights);
+  }
+
+  /**
+   * Creates a snapshot of nodes whose data are all Strings, which are looked up by name in a
+   * symbol table rather than in a map. The arrays are kept the same way.
+   *
+   * @param data    the name of each node, indexed by id
+   * @param symbols maps the name of each node to its id
+   */
+  public CompressedGraph(Object[] data, SymbolTable symbols, int[] offsets, int[] targets,
+      double[] weights, int[] reverseOffsets, int[] sources, double[] reverseWeights) {
+    this(data, null, symbols, offsets, targets, weights, reverseOffsets, sources, reverseWeights);
+  }
+
+  private CompressedGraph(Object[] data, MapADT<NodeType, Integer> ids, SymbolTable symbols,
+      int[] offsets, int[] targets, double[] weights, int[] reverseOffsets, int[] sources,
+      double[] reverseWeights) {
+    this.data = data;
+    this.ids = ids;
+    this.symbols = symbols;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+    this.reverseOffsets = reverseOffsets;
+    this.sources = sources;
+    this.reverseWeights = reverseWeights;
+  }
+
+  /**
+   * Creates a graph for a subclass that keeps its nodes and edges elsewhere, and overrides every
+   * method that reads them.
+   */
+  protected CompressedGraph() {
+    this(null, null, null, null, null, null, null, null, null);
+  }
+
+  /**
+   * Returns the id of the node containing the provided data.
+   *
+   * @param nodeData the data of the node to look up
+   * @return the id of that node, or -1 if no node in this snapshot contains it
+   */
+  public int idOf(NodeType nodeData) {
+    if (symbols != null)
+      return nodeData instanceof String ? symbols.idOf((String) nodeData) : -1;
+    if (nodeData == null || !ids.containsKey(nodeData))
+      return -1;
+    return ids.get(nodeData);
+  }
+
+  /**
+   * Returns the data stored in the node with the provided id.
+   *
+   * @param id the id of the node
+   * @return the data stored in that node
+   */
+  @SuppressWarnings("unchecked")
+  public NodeType dataOf(int id) {
+    return (NodeType) data[id];
+  }
+
+  /**
+   * @return the number of nodes in this snapshot
+   */
+  public int getNodeCount() {
+    return data.length;
+  }
+
+  /**
+   * @return the number of edges in this snapshot
+   */
+  public int getEdgeCount() {
+    return targets.length;
+  }
+
+  /**
+   * Returns a hash of the node data and edges in this snapshot, so that data precomputed from it
+   * (and saved) can be checked against the graph it is later used with.
+   *
+   * @return a hash of the contents of this snapshot
+   */
+  public long fingerprint() {
+    if (!fingerprinted) {
+      long hash = data.length;
+      for (Object nodeData : data)
+        hash = hash * 31 + nodeData.hashCode();
+      for (int offset : offsets)
+        hash = hash * 31 + offset;
+      for (int i = 0; i < targets.length; i++)
+        hash = (hash * 31 + targets[i]) * 31 + Double.doubleToLongBits(weights[i]);
+      fingerprint = hash;
+      fingerprinted = true;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * @param id the id of a node, or getNodeCount() for the end of the last node's edges
+   * @return the index of the first edge leaving that node
+   */
+  public int firstEdge(int id) {
+    return offsets[id];
+  }
+
+  /**
+   * @param edge the index of a leaving edge
+   * @return the id of the successor node of that edge
+   */
+  public int target(int edge) {
+    return targets[edge];
+  }
+
+  /**
+   * @param edge the index of a leaving edge
+   * @return the weight of that edge
+   */
+  public double weight(int edge) {
+    return weights[edge];
+  }
+
+  /**
+   * Finds the weight of the edge between two nodes by searching the edges leaving pred.
+   *
+   * @param pred the id of the predecessor node of the edge
+   * @param succ the id of the successor node of the edge
+   * @return the weight of the edge from pred to succ, or infinity when there is no such edge
+   */
+  public double weightBetween(int pred, int succ) {
+    for (int edge = offsets[pred]; edge < offsets[pred + 1]; edge++)
+      if (targets[edge] == succ)
+        return weights[edge];
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @param id the id of a node, or getNodeCount() for the end of the last node's edges
+   * @return the index of the first edge entering that node
+   */
+  public int firstReverseEdge(int id) {
+    return reverseOffsets[id];
+  }
+
+  /**
+   * @param edge the index of an entering edge
+   * @return the id of the predecessor node of that edge
+   */
+  public int source(int edge) {
+    return sources[edge];
+  }
+
+  /**
+   * @param edge the index of an entering edge
+   * @return the weight of that edge
+   */
+  public double reverseWeight(int edge) {
+    return reverseWeights[edge];
+  }
+}
@@ -0,0 +1,491 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A contraction hierarchy over the nodes of a CompressedGraph. Nodes are contracted one at a time,
+ * from the least to the most important, and every shortest path that ran through a contracted node
+ * between two of its remaining neighbors is replaced by a shortcut edge. The order of contraction
+ * gives each node a rank, and every shortest path can then be found by a forward search from its
+ * start and a backward search from its end that only follow edges towards higher ranked nodes.
+ * These two searches settle far fewer nodes than a search of the whole graph.
+ *
+ * Each edge of the hierarchy is either an edge of the original graph, or a shortcut that remembers
+ * the two edges it replaced, so that a path through shortcuts can be unpacked into the nodes of the
+ * original graph.
+ *
+ * On graphs with many long range edges, the last nodes to be contracted approach a clique and
+ * would need a shortcut between almost every pair of them. Contraction therefore stops once the
+ * remaining nodes have too many edges between them, and leaves those nodes as an uncontracted core
+ * that shares the highest rank, and whose edges both searches follow in either direction.
+ */
+public class ContractionHierarchy {
+
+  // witness searches give up after settling this many nodes, and add a shortcut that may not be
+  // needed instead: extra shortcuts never make queries incorrect, only a bit slower
+  protected static final int WITNESS_SETTLE_LIMIT = 64;
+
+  // contraction stops when the remaining nodes have more than this many edges leaving each of them
+  // on average
+  protected static final int CORE_DEGREE = 16;
+
+  protected final int nodeCount;
+  protected final long fingerprint; // of the graph this hierarchy was built from
+  protected final int[] ranks; // position of each node in the order of contraction
+  protected final int coreRank; // rank shared by every node of the core
+
+  // every edge of the hierarchy, indexed by edge id
+  protected final int[] sources;
+  protected final int[] targets;
+  protected final double[] weights;
+  // the ids of the two edges that each shortcut replaced, or -1 for edges of the original graph
+  protected final int[] firstHalves;
+  protected final int[] secondHalves;
+  protected final int shortcutCount;
+
+  // ids of the edges leaving each node towards a higher ranked node
+  protected final int[] upwardOffsets;
+  protected final int[] upwardEdges;
+  // ids of the edges entering each node from a higher ranked node
+  protected final int[] downwardOffsets;
+  protected final int[] downwardEdges;
+
+  protected ContractionHierarchy(int nodeCount, long fingerprint, int[] ranks, int coreRank,
+      int[] sources, int[] targets, double[] weights, int[] firstHalves, int[] secondHalves,
+      int shortcutCount) {
+    this.nodeCount = nodeCount;
+    this.fingerprint = fingerprint;
+    this.ranks = ranks;
+    this.coreRank = coreRank;
+    this.sources = sources;
+    this.targets = targets;
+    this.weights = weights;
+    this.firstHalves = firstHalves;
+    this.secondHalves = secondHalves;
+    this.shortcutCount = shortcutCount;
+
+    // lay out the upward edges leaving each node and the downward edges entering each node
+    // contiguously, where edges within the core are both
+    upwardOffsets = new int[nodeCount + 1];
+    downwardOffsets = new int[nodeCount + 1];
+    for (int edge = 0; edge < sources.length; edge++) {
+      if (isUpward(edge))
+        upwardOffsets[sources[edge] + 1]++;
+      if (isDownward(edge))
+        downwardOffsets[targets[edge] + 1]++;
+    }
+    for (int id = 0; id < nodeCount; id++) {
+      upwardOffsets[id + 1] += upwardOffsets[id];
+      downwardOffsets[id + 1] += downwardOffsets[id];
+    }
+    upwardEdges = new int[upwardOffsets[nodeCount]];
+    downwardEdges = new int[downwardOffsets[nodeCount]];
+    int[] nextUpward = Arrays.copyOf(upwardOffsets, nodeCount);
+    int[] nextDownward = Arrays.copyOf(downwardOffsets, nodeCount);
+    for (int edge = 0; edge < sources.length; edge++) {
+      if (isUpward(edge))
+        upwardEdges[nextUpward[sources[edge]]++] = edge;
+      if (isDownward(edge))
+        downwardEdges[nextDownward[targets[edge]]++] = edge;
+    }
+  }
+
+  private boolean isUpward(int edge) {
+    int from = ranks[sources[edge]];
+    int to = ranks[targets[edge]];
+    return from < to || (from == coreRank && to == coreRank);
+  }
+
+  private boolean isDownward(int edge) {
+    int from = ranks[sources[edge]];
+    int to = ranks[targets[edge]];
+    return from > to || (from == coreRank && to == coreRank);
+  }
+
+  /**
+   * Contracts every node of the provided graph to build its hierarchy.
+   *
+   * @param graph the graph to build a hierarchy for
+   * @return the hierarchy for that graph
+   */
+  public static ContractionHierarchy build(CompressedGraph<?> graph) {
+    return new Builder(graph).build();
+  }
+
+  /**
+   * Contracts every node of a snapshot of the provided graph to build its hierarchy.
+   *
+   * @param graph the graph to build a hierarchy for
+   * @return the hierarchy for the current contents of that graph, with the node ids of
+   *         graph.freeze()
+   */
+  public static ContractionHierarchy build(BaseGraph<?, ?> graph) {
+    return build(graph.freeze());
+  }
+
+  /**
+   * @param graph a compressed graph
+   * @return true if this hierarchy was built from a graph with the same nodes and edges
+   */
+  public boolean isFor(CompressedGraph<?> graph) {
+    return graph.getNodeCount() == nodeCount && graph.fingerprint() == fingerprint;
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the position of that node in the order of contraction, where 0 was contracted first,
+   *         and every node of the core has the same (highest) rank
+   */
+  public int getRank(int id) {
+    return ranks[id];
+  }
+
+  /**
+   * @return the number of nodes left uncontracted in the core of this hierarchy
+   */
+  public int getCoreSize() {
+    return nodeCount - coreRank;
+  }
+
+  /**
+   * @return the number of shortcut edges added while contracting the graph
+   */
+  public int getShortcutCount() {
+    return shortcutCount;
+  }
+
+  /**
+   * @param id the id of a node, or the node count for the end of the last node's edges
+   * @return the index of the first edge leaving that node towards a higher ranked node, or
+   *         another node of the core
+   */
+  public int firstUpwardEdge(int id) {
+    return upwardOffsets[id];
+  }
+
+  /**
+   * @param index the index of an upward edge, from firstUpwardEdge(id) up to (but excluding)
+   *              firstUpwardEdge(id+1)
+   * @return the edge id of that edge
+   */
+  public int upwardEdge(int index) {
+    return upwardEdges[index];
+  }
+
+  /**
+   * @param id the id of a node, or the node count for the end of the last node's edges
+   * @return the index of the first edge entering that node from a higher ranked node, or
+   *         another node of the core
+   */
+  public int firstDownwardEdge(int id) {
+    return downwardOffsets[id];
+  }
+
+  /**
+   * @param index the index of a downward edge, from firstDownwardEdge(id) up to (but excluding)
+   *              firstDownwardEdge(id+1)
+   * @return the edge id of that edge
+   */
+  public int downwardEdge(int index) {
+    return downwardEdges[index];
+  }
+
+  /**
+   * @param edge the id of an edge
+   * @return the id of the predecessor node of that edge
+   */
+  public int source(int edge) {
+    return sources[edge];
+  }
+
+  /**
+   * @param edge the id of an edge
+   * @return the id of the successor node of that edge
+   */
+  public int target(int edge) {
+    return targets[edge];
+  }
+
+  /**
+   * @param edge the id of an edge
+   * @return the weight of that edge, which for a shortcut is the cost of the path it replaced
+   */
+  public double weight(int edge) {
+    return weights[edge];
+  }
+
+  /**
+   * Appends the nodes of the original graph that an edge passes through, after its source and
+   * through its target, to the end of a path.
+   *
+   * @param edge the id of an edge
+   * @param path the ids of the nodes of a path that ends at the source of edge
+   */
+  public void unpack(int edge, List<Integer> path) {
+    Deque<Integer> pending = new ArrayDeque<>();
+    pending.push(edge);
+    while (!pending.isEmpty()) {
+      int current = pending.pop();
+      if (firstHalves[current] < 0) {
+        path.add(targets[current]);
+      } else {
+        pending.push(secondHalves[current]);
+        pending.push(firstHalves[current]);
+      }
+    }
+  }
+
+  /**
+   * Contracts the nodes of a graph in order of their edge difference: the number of shortcuts that
+   * contracting a node would add, minus the number of edges it would remove, plus the number of
+   * its neighbors that have already been contracted (so that contraction spreads evenly across the
+   * graph). Contracting a node can change the priorities of others, so each priority is computed
+   * again when its node leaves the queue, and the node is queued again when it is no longer the
+   * smallest.
+   */
+  protected static class Builder {
+    protected final CompressedGraph<?> graph;
+    protected final int nodeCount;
+
+    // every edge added so far, indexed by edge id
+    protected int edgeCount = 0;
+    protected int shortcutCount = 0;
+    protected int[] sources;
+    protected int[] targets;
+    protected double[] weights;
+    protected int[] firstHalves;
+    protected int[] secondHalves;
+
+    // ids of the edges leaving and entering each node that remains, towards other nodes that remain
+    protected final int[][] leaving;
+    protected final int[] leavingSizes;
+    protected final int[][] entering;
+    protected final int[] enteringSizes;
+    protected int remainingEdges = 0;
+
+    protected final int[] contractedNeighbors;
+
+    // reused by every witness search, and reset through the list of nodes each search reached
+    protected final double[] witnessCosts;
+    protected final int[] reached;
+    protected final IndexedMinHeap witnessQueue;
+
+    protected Builder(CompressedGraph<?> graph) {
+      this.graph = graph;
+      nodeCount = graph.getNodeCount();
+      int capacity = Math.max(16, graph.getEdgeCount() * 2);
+      sources = new int[capacity];
+      targets = new int[capacity];
+      weights = new double[capacity];
+      firstHalves = new int[capacity];
+      secondHalves = new int[capacity];
+      leaving = new int[nodeCount][4];
+      leavingSizes = new int[nodeCount];
+      entering = new int[nodeCount][4];
+      enteringSizes = new int[nodeCount];
+      contractedNeighbors = new int[nodeCount];
+      witnessCosts = new double[nodeCount];
+      Arrays.fill(witnessCosts, Double.POSITIVE_INFINITY);
+      reached = new int[nodeCount];
+      witnessQueue = new IndexedMinHeap(nodeCount);
+
+      // parallel edges are merged into the cheapest one, and loops are never part of a shortest
+      // path
+      for (int id = 0; id < nodeCount; id++)
+        for (int edge = graph.firstEdge(id); edge < graph.firstEdge(id + 1); edge++)
+          if (graph.target(edge) != id)
+            addOrImprove(id, graph.target(edge), graph.weight(edge), -1, -1);
+    }
+
+    protected ContractionHierarchy build() {
+      int[] ranks = new int[nodeCount];
+      IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+      for (int id = 0; id < nodeCount; id++)
+        queue.insertOrDecrease(id, priority(id));
+
+      int rank = 0;
+      while (!queue.isEmpty()) {
+        if (remainingEdges > (long) CORE_DEGREE * queue.size())
+          break;
+        int node = queue.poll();
+        // contracting other nodes may have raised this node's priority since it was queued
+        double priority = priority(node);
+        if (!queue.isEmpty() && priority > queue.peekKey()) {
+          queue.insertOrDecrease(node, priority);
+          continue;
+        }
+        contract(node, false);
+        ranks[node] = rank++;
+        remainingEdges -= leavingSizes[node] + enteringSizes[node];
+        // the edges of a contracted node are only needed again when building the hierarchy, so
+        // they are dropped from its neighbors' lists to keep later searches short
+        for (int i = 0; i < leavingSizes[node]; i++) {
+          int succ = targets[leaving[node][i]];
+          remove(entering, enteringSizes, succ, leaving[node][i]);
+          contractedNeighbors[succ]++;
+        }
+        for (int i = 0; i < enteringSizes[node]; i++) {
+          int pred = sources[entering[node][i]];
+          remove(leaving, leavingSizes, pred, entering[node][i]);
+          contractedNeighbors[pred]++;
+        }
+      }
+      // every node left in the queue is part of the core
+      int coreRank = rank;
+      while (!queue.isEmpty())
+        ranks[queue.poll()] = coreRank;
+
+      return new ContractionHierarchy(nodeCount, graph.fingerprint(), ranks, coreRank,
+          Arrays.copyOf(sources, edgeCount), Arrays.copyOf(targets, edgeCount),
+          Arrays.copyOf(weights, edgeCount), Arrays.copyOf(firstHalves, edgeCount),
+          Arrays.copyOf(secondHalves, edgeCount), shortcutCount);
+    }
+
+    // the edge difference of a node, plus the number of its contracted neighbors
+    private double priority(int node) {
+      int removed = leavingSizes[node] + enteringSizes[node];
+      return contract(node, true) - removed + contractedNeighbors[node];
+    }
+
+    /**
+     * Finds the shortcuts needed to contract a node: one for each pair of remaining neighbors
+     * pred and succ whose cheapest path runs through node, which a witness search from pred that
+     * avoids node cannot match.
+     *
+     * @param node     the id of the node to contract
+     * @param simulate true to only count the shortcuts, or false to add them
+     * @return the number of shortcuts needed
+     */
+    protected int contract(int node, boolean simulate) {
+      int shortcuts = 0;
+      for (int i = 0; i < enteringSizes[node]; i++) {
+        int in = entering[node][i];
+        int pred = sources[in];
+        // stays negative when node has no out-neighbor other than pred (paths may cost 0)
+        double maxCost = -1.0;
+        for (int j = 0; j < leavingSizes[node]; j++) {
+          int out = leaving[node][j];
+          if (targets[out] != pred)
+            maxCost = Math.max(maxCost, weights[in] + weights[out]);
+        }
+        if (maxCost < 0.0)
+          continue;
+
+        int reachedCount = witnessSearch(pred, node, maxCost);
+        for (int j = 0; j < leavingSizes[node]; j++) {
+          int out = leaving[node][j];
+          int succ = targets[out];
+          if (succ == pred)
+            continue;
+          double cost = weights[in] + weights[out];
+          if (witnessCosts[succ] > cost) {
+            shortcuts++;
+            if (!simulate)
+              addOrImprove(pred, succ, cost, in, out);
+          }
+        }
+        for (int j = 0; j < reachedCount; j++)
+          witnessCosts[reached[j]] = Double.POSITIVE_INFINITY;
+      }
+      return shortcuts;
+    }
+
+    /**
+     * Runs a limited Dijkstra search from source through the nodes that remain, other than the
+     * one being contracted, recording the cheapest cost found to each node in witnessCosts.
+     *
+     * @param source  the id of the node to search from
+     * @param avoided the id of the node being contracted
+     * @param maxCost the cost above which paths are no longer needed as witnesses
+     * @return the number of nodes reached, whose ids are at the front of reached
+     */
+    protected int witnessSearch(int source, int avoided, double maxCost) {
+      int reachedCount = 0;
+      int settled = 0;
+      witnessQueue.clear();
+      witnessCosts[source] = 0.0;
+      reached[reachedCount++] = source;
+      witnessQueue.insertOrDecrease(source, 0.0);
+      while (!witnessQueue.isEmpty() && witnessQueue.peekKey() <= maxCost
+          && settled < WITNESS_SETTLE_LIMIT) {
+        int current = witnessQueue.poll();
+        settled++;
+        for (int i = 0; i < leavingSizes[current]; i++) {
+          int edge = leaving[current][i];
+          int succ = targets[edge];
+          if (succ == avoided)
+            continue;
+          double newCost = witnessCosts[current] + weights[edge];
+          if (newCost < witnessCosts[succ]) {
+            if (witnessCosts[succ] == Double.POSITIVE_INFINITY)
+              reached[reachedCount++] = succ;
+            witnessCosts[succ] = newCost;
+            witnessQueue.insertOrDecrease(succ, newCost);
+          }
+        }
+      }
+      return reachedCount;
+    }
+
+    /**
+     * Adds an edge from pred to succ, or lowers the weight of the edge already between them.
+     *
+     * @param pred         the id of the predecessor node
+     * @param succ         the id of the successor node
+     * @param weight       the weight of the edge
+     * @param firstHalf    the id of the edge from pred to the contracted node, or -1 for an edge
+     *                     of the original graph
+     * @param secondHalf   the id of the edge from the contracted node to succ, or -1
+     */
+    protected void addOrImprove(int pred, int succ, double weight, int firstHalf,
+        int secondHalf) {
+      for (int i = 0; i < leavingSizes[pred]; i++) {
+        int edge = leaving[pred][i];
+        if (targets[edge] == succ) {
+          if (weight < weights[edge]) {
+            if (firstHalves[edge] < 0 && firstHalf >= 0)
+              shortcutCount++;
+            weights[edge] = weight;
+            firstHalves[edge] = firstHalf;
+            secondHalves[edge] = secondHalf;
+          }
+          return;
+        }
+      }
+      if (edgeCount == sources.length) {
+        sources = Arrays.copyOf(sources, edgeCount * 2);
+        targets = Arrays.copyOf(targets, edgeCount * 2);
+        weights = Arrays.copyOf(weights, edgeCount * 2);
+        firstHalves = Arrays.copyOf(firstHalves, edgeCount * 2);
+        secondHalves = Arrays.copyOf(secondHalves, edgeCount * 2);
+      }
+      int edge = edgeCount++;
+      remainingEdges++;
+      sources[edge] = pred;
+      targets[edge] = succ;
+      weights[edge] = weight;
+      firstHalves[edge] = firstHalf;
+      secondHalves[edge] = secondHalf;
+      if (firstHalf >= 0)
+        shortcutCount++;
+      append(leaving, leavingSizes, pred, edge);
+      append(entering, enteringSizes, succ, edge);
+    }
+
+    private static void remove(int[][] lists, int[] sizes, int node, int edge) {
+      for (int i = 0; i < sizes[node]; i++) {
+        if (lists[node][i] == edge) {
+          lists[node][i] = lists[node][--sizes[node]];
+          return;
+        }
+      }
+    }
+
+    private static void append(int[][] lists, int[] sizes, int node, int edge) {
+      if (sizes[node] == lists[node].length)
+        lists[node] = Arrays.copyOf(lists[node], sizes[node] * 2);
+      lists[node][sizes[node]++] = edge;
+    }
+  }
+}
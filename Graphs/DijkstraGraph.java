@@ -5,11 +5,18 @@
 // Lecturer: Gary
 // Notes to Grader: None
 
-import java.util.PriorityQueue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
@@ -55,76 +62,819 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
    * Constructor that sets the map that the graph uses.
    */
   public DijkstraGraph() {
-    super(new HashtableMap<>());
+    super(new ProbingHashtableMap<>());
+  }
+
+  // Compressed snapshot of this graph that searches run against, or null when the graph has
+  // changed since the last snapshot was taken
+  protected volatile CompressedGraph<NodeType> snapshot = null;
+
+  // compressed graph this graph was loaded from, until its nodes and edges have been built from it
+  protected volatile CompressedGraph<NodeType> unloaded = null;
+
+  // number of changes made to this graph, so that results cached before a change can be told apart
+  protected final AtomicLong version = new AtomicLong();
+
+  // most weight (path nodes plus a fixed amount per route) the route cache holds by default
+  public static final int DEFAULT_ROUTE_CACHE_WEIGHT = 1 << 20;
+
+  // routes found by searches, kept for the version of this graph they were found in
+  protected final RouteCache routeCache = new RouteCache(DEFAULT_ROUTE_CACHE_WEIGHT);
+
+  /**
+   * The algorithms that can answer queries for the shortest path between a start and an end node.
+   * Each of them finds a path with the same (minimal) cost.
+   */
+  public enum QueryMode {
+    // a single search forward from the start node
+    DIJKSTRA,
+    // searches forward from the start node and backward from the end node that meet in between
+    BIDIRECTIONAL,
+    // an A* search guided by lower bounds from the costs to and from a few landmark nodes
+    ALT,
+    // searches forward and backward through a contraction hierarchy that only move upwards
+    CH
+  }
+
+  // number of landmarks selected when the ALT mode needs an index that was not provided
+  protected static final int DEFAULT_LANDMARK_COUNT = 8;
+
+  // landmarks used by the ALT query mode, or null until they are provided or first needed
+  protected volatile LandmarkIndex landmarks = null;
+
+  // graphs with at most this many nodes answer queries from all pairs distance tables by default
+  public static final int DEFAULT_ALL_PAIRS_LIMIT = 1024;
+
+  protected volatile int allPairsLimit = DEFAULT_ALL_PAIRS_LIMIT;
+
+  // distance tables for a snapshot of this graph, or null until they are first needed
+  protected volatile DistanceTable distances = null;
+
+  // contraction hierarchy used by the CH query mode, or null until it is first needed
+  protected volatile ContractionHierarchy hierarchy = null;
+
+  protected volatile QueryMode queryMode = QueryMode.DIJKSTRA;
+
+  // total number of nodes settled by the searches run on this graph
+  protected final LongAdder settledCount = new LongAdder();
+
+  // search state kept by each thread and reused by every search it runs, on any graph: one
+  // workspace for single searches and the forward half of two way searches, and one for their
+  // backward half
+  private static final ThreadLocal<SearchWorkspace[]> WORKSPACES = ThreadLocal.withInitial(
+      () -> new SearchWorkspace[] {new SearchWorkspace(16), new SearchWorkspace(16)});
+
+  /**
+   * Selects the algorithm used by point to point queries (shortestRoute, shortestPathData and
+   * shortestPathCost) on this graph.
+   *
+   * @param queryMode the algorithm to use from now on
+   */
+  public void setQueryMode(QueryMode queryMode) {
+    this.queryMode = queryMode;
+    // routes found by the previous algorithm would otherwise keep being returned for this one
+    routeCache.clear();
+  }
+
+  /**
+   * Sets the most weight the cache of routes found by searches holds, where each route weighs one
+   * unit per node along it plus a fixed amount, and evicts the least recently used routes that no
+   * longer fit.
+   *
+   * @param maxWeight the most weight to cache, or 0 to stop caching routes
+   */
+  public void setRouteCacheCapacity(int maxWeight) {
+    routeCache.setMaxWeight(maxWeight);
+  }
+
+  /**
+   * @return the cache of routes found by searches on this graph, and its hit and miss counts
+   */
+  public RouteCache getRouteCache() {
+    return routeCache;
+  }
+
+  /**
+   * @return the number of changes made to this graph so far
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Provides the landmarks used by the ALT query mode, such as an index loaded from a file. When
+   * the graph changes, or no landmarks were provided, the ALT mode builds its own index the next
+   * time it is used.
+   *
+   * @param landmarks the landmark index built for the current contents of this graph
+   */
+  public void setLandmarks(LandmarkIndex landmarks) {
+    this.landmarks = landmarks;
+  }
+
+  /**
+   * Provides the contraction hierarchy used by the CH query mode, so that it can be built ahead
+   * of the first query. When the graph changes, or no hierarchy was provided, the CH mode builds
+   * its own the next time it is used.
+   *
+   * @param hierarchy the contraction hierarchy built for the current contents of this graph
+   */
+  public void setContractionHierarchy(ContractionHierarchy hierarchy) {
+    this.hierarchy = hierarchy;
+  }
+
+  /**
+   * Sets the largest number of nodes for which this graph answers queries (including
+   * shortestPathTree) by looking them up in all pairs distance tables, instead of searching with
+   * the current query mode. The tables hold an entry for every pair of nodes, and are computed the
+   * first time they are needed after the graph changes.
+   *
+   * @param maxNodes the largest node count to use distance tables for, or 0 to always search
+   */
+  public void setAllPairsLimit(int maxNodes) {
+    this.allPairsLimit = Math.min(maxNodes, DistanceTable.MAX_NODES);
+  }
+
+  /**
+   * @return the largest number of nodes for which this graph answers queries from distance tables
+   */
+  public int getAllPairsLimit() {
+    return allPairsLimit;
+  }
+
+  /**
+   * @return the algorithm used by point to point queries on this graph
+   */
+  public QueryMode getQueryMode() {
+    return queryMode;
+  }
+
+  /**
+   * @return the total number of nodes settled by all searches run on this graph so far
+   */
+  public long getSettledCount() {
+    return settledCount.sum();
+  }
+
+  /**
+   * Returns a compressed snapshot of the current contents of this graph, taking a new one when the
+   * graph has changed since the previous snapshot.
+   *
+   * @return an up to date snapshot of this graph
+   */
+  public CompressedGraph<NodeType> snapshot() {
+    CompressedGraph<NodeType> current = snapshot;
+    if (current == null) {
+      current = freeze();
+      snapshot = current;
+    }
+    return current;
+  }
+
+  /**
+   * Replaces the contents of this graph with the nodes and edges of a compressed graph, such as a
+   * MappedGraph, which searches then run against directly instead of against a new snapshot, until
+   * this graph next changes. The graph's own nodes and edges are only built from the compressed
+   * graph once something other than a search, or a count or lookup of nodes, needs them, so
+   * loading takes the same time however large the graph is.
+   *
+   * @param graph the compressed graph to load
+   */
+  public void load(CompressedGraph<NodeType> graph) {
+    clear();
+    unloaded = graph;
+    snapshot = graph;
+  }
+
+  // builds this graph's nodes and edges from the compressed graph it was loaded from, if that
+  // has not been done yet, without changing its version or snapshot
+  @SuppressWarnings("unchecked")
+  private void materialize() {
+    if (unloaded == null)
+      return;
+    synchronized (this) {
+      CompressedGraph<NodeType> graph = unloaded;
+      if (graph == null)
+        return;
+      // the weights of compressed graphs are doubles
+      GraphBuilder<NodeType, EdgeType> builder =
+          (GraphBuilder<NodeType, EdgeType>) (GraphBuilder<NodeType, ?>) GraphBuilder.of(graph);
+      builder.resolveDuplicates();
+      super.replaceContents(builder);
+      unloaded = null;
+    }
+  }
+
+  // forgets the snapshot of this graph's previous contents, and the results cached from it
+  private void changed() {
+    snapshot = null;
+    version.incrementAndGet();
+  }
+
+  @Override
+  public boolean insertNode(NodeType data) {
+    materialize();
+    boolean changed = super.insertNode(data);
+    if (changed)
+      changed();
+    return changed;
+  }
+
+  @Override
+  public boolean removeNode(NodeType data) {
+    materialize();
+    boolean changed = super.removeNode(data);
+    if (changed)
+      changed();
+    return changed;
+  }
+
+  @Override
+  public void clear() {
+    unloaded = null;
+    super.clear();
+    changed();
+  }
+
+  @Override
+  protected void replaceContents(GraphBuilder<NodeType, EdgeType> builder) {
+    unloaded = null;
+    super.replaceContents(builder);
+    changed();
+  }
+
+  @Override
+  public boolean containsNode(NodeType data) {
+    CompressedGraph<NodeType> graph = unloaded;
+    if (graph != null)
+      return graph.idOf(data) >= 0;
+    return super.containsNode(data);
+  }
+
+  @Override
+  public List<NodeType> getAllNodes() {
+    CompressedGraph<NodeType> graph = unloaded;
+    if (graph == null)
+      return super.getAllNodes();
+    List<NodeType> all = new ArrayList<>(graph.getNodeCount());
+    for (int id = 0; id < graph.getNodeCount(); id++)
+      all.add(graph.dataOf(id));
+    return all;
+  }
+
+  @Override
+  public int getNodeCount() {
+    CompressedGraph<NodeType> graph = unloaded;
+    return graph != null ? graph.getNodeCount() : super.getNodeCount();
+  }
+
+  @Override
+  public int getEdgeCount() {
+    CompressedGraph<NodeType> graph = unloaded;
+    return graph != null ? graph.getEdgeCount() : super.getEdgeCount();
+  }
+
+  @Override
+  public boolean containsEdge(NodeType pred, NodeType succ) {
+    materialize();
+    return super.containsEdge(pred, succ);
+  }
+
+  @Override
+  public EdgeType getEdge(NodeType pred, NodeType succ) {
+    materialize();
+    return super.getEdge(pred, succ);
+  }
+
+  @Override
+  public CompressedGraph<NodeType> freeze() {
+    materialize();
+    return super.freeze();
+  }
+
+  @Override
+  public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+    materialize();
+    boolean changed = super.insertEdge(pred, succ, weight);
+    if (changed)
+      changed();
+    return changed;
+  }
+
+  @Override
+  public boolean removeEdge(NodeType pred, NodeType succ) {
+    materialize();
+    boolean changed = super.removeEdge(pred, succ);
+    if (changed)
+      changed();
+    return changed;
+  }
+
+  /**
+   * Returns the distance tables for a compressed graph, building them when the graph has changed
+   * since they were last built.
+   *
+   * @param graph the compressed graph that queries are answered for
+   * @return the distance tables for graph, or null when it has more nodes than the all pairs limit
+   */
+  protected DistanceTable distanceTable(CompressedGraph<NodeType> graph) {
+    if (graph.getNodeCount() > allPairsLimit)
+      return null;
+    DistanceTable table = distances;
+    if (table == null || !table.isFor(graph)) {
+      table = DistanceTable.build(graph);
+      distances = table;
+    }
+    return table;
+  }
+
+  /**
+   * Returns one of the current thread's search workspaces, reset for a new search.
+   *
+   * @param which     0 for a single search or the forward half of a two way search, or 1 for the
+   *                  backward half
+   * @param nodeCount the number of nodes in the graph to search
+   * @return a workspace with no nodes reached
+   */
+  protected static SearchWorkspace workspace(int which, int nodeCount) {
+    SearchWorkspace workspace = WORKSPACES.get()[which];
+    workspace.reset(nodeCount);
+    return workspace;
+  }
+
+  /**
+   * Runs Dijkstra's algorithm over a compressed graph from the source node until the target node
+   * is settled, or until limit nodes have been settled, recording the cost of the cheapest path
+   * found to each node along with the id of the node before it on that path in a workspace.
+   *
+   * @param graph     the compressed graph to search
+   * @param source    the id of the starting node
+   * @param target    the id of the destination node, or -1 to search every reachable node
+   * @param limit     the maximum number of nodes to settle, including the source
+   * @param workspace a workspace with no nodes reached, which is left holding the search's results
+   * @param order     filled with the ids of settled nodes in the order they were settled, or null
+   *                  when that order is not needed
+   * @return the number of nodes that were settled
+   */
+  protected int search(CompressedGraph<NodeType> graph, int source, int target, int limit,
+      SearchWorkspace workspace, int[] order) {
+    // Each node is queued at most once, and settled once it leaves the queue
+    IndexedMinHeap queue = workspace.queue();
+    int settledCount = 0;
+    workspace.reach(source, 0.0, -1);
+    queue.insertOrDecrease(source, 0.0);
+
+    while (!queue.isEmpty() && settledCount < limit) {
+      int current = queue.poll();
+      workspace.settle(current);
+      if (order != null)
+        order[settledCount] = current;
+      settledCount++;
+      if (current == target)
+        break;
+
+      double cost = workspace.cost(current);
+      for (int edge = graph.firstEdge(current); edge < graph.firstEdge(current + 1); edge++) {
+        int succ = graph.target(edge);
+        if (workspace.isSettled(succ))
+          continue;
+        double newCost = cost + graph.weight(edge);
+        if (newCost < workspace.cost(succ)) {
+          workspace.reach(succ, newCost, current);
+          queue.insertOrDecrease(succ, newCost);
+        }
+      }
+    }
+    this.settledCount.add(settledCount);
+    return settledCount;
+  }
+
+  /**
+   * Returns the shortest paths from the node with the provided start value to the limit-1 other
+   * nodes that can be reached most cheaply from it, using a single run of Dijkstra's algorithm that
+   * stops once limit nodes have been settled, or the distance tables of a small enough graph.
+   *
+   * @param start the data item in the starting node for every path
+   * @param limit the maximum number of nodes in the tree, including start
+   * @return the tree of the cheapest shortest paths leaving start
+   * @throws NoSuchElementException if the start node cannot be found in the graph
+   */
+  @Override
+  public ShortestPathTree<NodeType> shortestPathTree(NodeType start, int limit) {
+    CompressedGraph<NodeType> graph = snapshot();
+    int source = graph.idOf(start);
+    if (source < 0)
+      throw new NoSuchElementException(start + " Not found in the graph");
+
+    DistanceTable table = distanceTable(graph);
+    if (table != null) {
+      int[] closest = table.closest(source, limit);
+      ShortestPathTree<NodeType> tree = new ShortestPathTree<>(start, closest.length);
+      for (int i = 1; i < closest.length; i++) {
+        int[] path = table.path(source, closest[i]);
+        tree.add(graph.dataOf(closest[i]), graph.dataOf(path[path.length - 2]),
+            table.cost(source, closest[i]));
+      }
+      return tree;
+    }
+
+    int nodeCount = graph.getNodeCount();
+    SearchWorkspace workspace = workspace(0, nodeCount);
+    int[] order = new int[Math.max(1, Math.min(limit, nodeCount))];
+    int settledCount = search(graph, source, -1, limit, workspace, order);
+
+    ShortestPathTree<NodeType> tree = new ShortestPathTree<>(start, settledCount);
+    for (int i = 1; i < settledCount; i++) {
+      int id = order[i];
+      tree.add(graph.dataOf(id), graph.dataOf(workspace.predecessor(id)), workspace.cost(id));
+    }
+    return tree;
   }
 
   /**
-   * This helper method creates a network of SearchNodes while computing the shortest path between
-   * the provided start and end locations. The SearchNode that is returned by this method is
-   * represents the end of the shortest path that is found: it's cost is the cost of that shortest
-   * path, and the nodes linked together through predecessor references represent all of the nodes
-   * along that shortest path (ordered from end to start).
+   * Returns the shortest route from the node with the provided start value to the node with the
+   * provided end value, built from a single run of Dijkstra's algorithm.
    *
    * @param start the data item in the starting node for the path
    * @param end   the data item in the destination node for the path
-   * @return SearchNode for the final end node within the shortest path
-   * @throws NoSuchElementException when no path from start to end is found or when either start or
-   *                                end data do not correspond to a graph node
+   * @return the shortest route from start to end, or Route.none() if either node cannot be found
+   *         in the graph or there is no directed path from start to end
    */
-  protected SearchNode computeShortestPath(NodeType start, NodeType end) {
+  @Override
+  public Route<NodeType> shortestRoute(NodeType start, NodeType end) {
+    // read before the snapshot, so that a route found in the snapshot of an older graph is never
+    // cached for a newer version
+    long version = this.version.get();
+    CompressedGraph<NodeType> graph = snapshot();
+    int source = graph.idOf(start);
+    int target = graph.idOf(end);
+    if (source < 0 || target < 0)
+      return Route.none();
+    return route(graph, version, source, target);
+  }
 
-    if (!this.containsNode(start) || !this.containsNode(end)) {
-      throw new NoSuchElementException(start + "or" + end + "Not found in the graph");
+  /**
+   * Finds the shortest route between two nodes of a compressed graph, from the distance tables
+   * when the graph is small enough for them, and otherwise from the route cache or with the
+   * algorithm selected by the current query mode.
+   *
+   * @param graph   the compressed graph to search
+   * @param version the version of this graph read before graph was taken, which the route is
+   *                cached for
+   * @param source  the id of the starting node
+   * @param target  the id of the destination node
+   * @return the shortest route from source to target, or Route.none() when there is no path
+   */
+  protected Route<NodeType> route(CompressedGraph<NodeType> graph, long version, int source,
+      int target) {
+    DistanceTable table = distanceTable(graph);
+    if (table != null) {
+      int[] path = table.path(source, target);
+      return path == null ? Route.none() : toRoute(graph, path, table.cost(source, target));
     }
 
-    // Creating Queue and visited set as PlaceHolderMap, which will contain all the predecessors
-    PriorityQueue<SearchNode> queue = new PriorityQueue<>();
-    HashtableMap<NodeType, SearchNode> vistedSet = new HashtableMap<>();
-    // Making sure to always update the new costs of the nodes
-    HashtableMap<NodeType, Double> costs = new HashtableMap<>();
-    Node startingNode = this.nodes.get(start);
+    RouteCache.Entry cached = routeCache.get(version, source, target);
+    if (cached != null)
+      return cached.path == null ? Route.none() : toRoute(graph, cached.path, cached.cost);
+    RouteCache.Entry found = searchRoute(graph, source, target);
+    routeCache.put(version, source, target, found.path, found.cost);
+    return found.path == null ? Route.none() : toRoute(graph, found.path, found.cost);
+  }
 
-    // Indicates this is the node with no pred and a value of 0(Only applies to starting)
-    SearchNode startSearchNode = new SearchNode(startingNode, 0.0, null);
-    queue.add(startSearchNode);
-    costs.put(start, 0.0);
+  /**
+   * Searches for the shortest route between two nodes of a compressed graph with the algorithm
+   * selected by the current query mode.
+   *
+   * @param graph  the compressed graph to search
+   * @param source the id of the starting node
+   * @param target the id of the destination node
+   * @return the ids along the shortest path from source to target with its cost, or
+   *         RouteCache.NO_PATH when there is no path
+   */
+  protected RouteCache.Entry searchRoute(CompressedGraph<NodeType> graph, int source,
+      int target) {
+    switch (queryMode) {
+      case BIDIRECTIONAL:
+        return bidirectionalRoute(graph, source, target);
+      case ALT:
+        LandmarkIndex index = landmarks;
+        if (index == null || !index.isFor(graph)) {
+          index = LandmarkIndex.build(graph, DEFAULT_LANDMARK_COUNT);
+          landmarks = index;
+        }
+        return landmarkRoute(graph, source, target, index);
+      case CH:
+        ContractionHierarchy current = hierarchy;
+        if (current == null || !current.isFor(graph)) {
+          current = ContractionHierarchy.build(graph);
+          hierarchy = current;
+        }
+        return hierarchyRoute(graph, source, target, current);
+      default:
+        SearchWorkspace workspace = workspace(0, graph.getNodeCount());
+        search(graph, source, target, Integer.MAX_VALUE, workspace, null);
+        if (workspace.cost(target) == Double.POSITIVE_INFINITY)
+          return RouteCache.NO_PATH;
+        return new RouteCache.Entry(pathTo(target, workspace), workspace.cost(target));
+    }
+  }
 
-    // Dijkstra Algo
-    while (!queue.isEmpty()) {
-      // Get shortest costing node
-      SearchNode searchCurrentNode = queue.poll();
-      Node currentNode = searchCurrentNode.node;
+  /**
+   * Finds the shortest route between two nodes with two searches run in turns: one forward from the
+   * source over the edges leaving each node, and one backward from the target over the edges
+   * entering each node. Every edge relaxed next to a node reached by the other search may complete
+   * a shorter path, and the searches stop once the smallest costs left in their two queues add up
+   * to at least the cost of the shortest path completed so far, since no path through unsettled
+   * nodes can be cheaper.
+   *
+   * @param graph  the compressed graph to search
+   * @param source the id of the starting node
+   * @param target the id of the destination node
+   * @return the ids along the shortest path from source to target with its cost, or
+   *         RouteCache.NO_PATH when there is no path
+   */
+  protected RouteCache.Entry bidirectionalRoute(CompressedGraph<NodeType> graph, int source,
+      int target) {
+    // the backward search records the node after each node it reaches as its "predecessor"
+    SearchWorkspace forward = workspace(0, graph.getNodeCount());
+    SearchWorkspace backward = workspace(1, graph.getNodeCount());
+    IndexedMinHeap forwardQueue = forward.queue();
+    IndexedMinHeap backwardQueue = backward.queue();
+    forward.reach(source, 0.0, -1);
+    backward.reach(target, 0.0, -1);
+    forwardQueue.insertOrDecrease(source, 0.0);
+    backwardQueue.insertOrDecrease(target, 0.0);
+
+    // cost of the shortest path completed so far, and the node where its two halves meet
+    double best = source == target ? 0.0 : Double.POSITIVE_INFINITY;
+    int meeting = source == target ? source : -1;
+    int settled = 0;
 
-      // If found the end return final end node
-      if (currentNode.data.equals(end)) {
-        return searchCurrentNode;
+    while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()
+        && forwardQueue.peekKey() + backwardQueue.peekKey() < best) {
+      settled++;
+      if (forwardQueue.peekKey() <= backwardQueue.peekKey()) {
+        int current = forwardQueue.poll();
+        forward.settle(current);
+        for (int edge = graph.firstEdge(current); edge < graph.firstEdge(current + 1); edge++) {
+          int succ = graph.target(edge);
+          if (forward.isSettled(succ))
+            continue;
+          double newCost = forward.cost(current) + graph.weight(edge);
+          if (newCost < forward.cost(succ)) {
+            forward.reach(succ, newCost, current);
+            forwardQueue.insertOrDecrease(succ, newCost);
+          }
+          if (newCost + backward.cost(succ) < best) {
+            best = newCost + backward.cost(succ);
+            meeting = succ;
+          }
+        }
+      } else {
+        int current = backwardQueue.poll();
+        backward.settle(current);
+        for (int edge = graph.firstReverseEdge(current);
+            edge < graph.firstReverseEdge(current + 1); edge++) {
+          int pred = graph.source(edge);
+          if (backward.isSettled(pred))
+            continue;
+          double newCost = backward.cost(current) + graph.reverseWeight(edge);
+          if (newCost < backward.cost(pred)) {
+            backward.reach(pred, newCost, current);
+            backwardQueue.insertOrDecrease(pred, newCost);
+          }
+          if (newCost + forward.cost(pred) < best) {
+            best = newCost + forward.cost(pred);
+            meeting = pred;
+          }
+        }
       }
+    }
+    settledCount.add(settled);
+    if (meeting < 0)
+      return RouteCache.NO_PATH;
 
-      for (int i = 0; i < currentNode.edgesLeaving.size(); i++) {
-        // Getting the edges from current node
-        Edge edge = currentNode.edgesLeaving.get(i);
-        // Getting the nodes from the current nodes(Data)
-        Node succNode = edge.successor;
-        NodeType succNodeData = succNode.data;
-
-        // Finding the total costs from one node to another and making that newNode that cost
-        double newCosts = searchCurrentNode.cost + edge.data.doubleValue();
-
-        if (!costs.containsKey(succNodeData) || newCosts < costs.get(succNodeData)) {
-          // If so add it in queue as visited, and create a searchNode of it
-          // Making sure to update the current node, whatever its pred was and the total cost.
-          SearchNode succSearchNode = new SearchNode(succNode, newCosts, searchCurrentNode);
-          queue.add(succSearchNode);
-
-          if (!costs.containsKey(succNodeData)) {
-            costs.put(succNodeData, newCosts);
-            vistedSet.put(succNodeData, succSearchNode);
+    // join the forward half of the path to the meeting node with the backward half after it
+    int[] firstHalf = pathTo(meeting, forward);
+    int length = firstHalf.length;
+    for (int id = backward.predecessor(meeting); id >= 0; id = backward.predecessor(id))
+      length++;
+    int[] path = Arrays.copyOf(firstHalf, length);
+    int index = firstHalf.length;
+    for (int id = backward.predecessor(meeting); id >= 0; id = backward.predecessor(id))
+      path[index++] = id;
+    return new RouteCache.Entry(path, best);
+  }
+
+  /**
+   * Finds the shortest route between two nodes with an A* search, which settles nodes in order of
+   * their cost from the source plus a landmark lower bound on their remaining cost to the target.
+   * These bounds are consistent, so every settled node already has its final cost, and the search
+   * settles fewer of the nodes that lead away from the target than Dijkstra's algorithm does.
+   *
+   * @param graph     the compressed graph to search
+   * @param source    the id of the starting node
+   * @param target    the id of the destination node
+   * @param landmarks a landmark index built from graph
+   * @return the ids along the shortest path from source to target with its cost, or
+   *         RouteCache.NO_PATH when there is no path
+   */
+  protected RouteCache.Entry landmarkRoute(CompressedGraph<NodeType> graph, int source,
+      int target, LandmarkIndex landmarks) {
+    SearchWorkspace workspace = workspace(0, graph.getNodeCount());
+    IndexedMinHeap queue = workspace.queue();
+    int settledNodes = 0;
+    workspace.reach(source, 0.0, -1);
+    queue.insertOrDecrease(source, landmarks.lowerBound(source, target));
+
+    while (!queue.isEmpty()) {
+      int current = queue.poll();
+      workspace.settle(current);
+      settledNodes++;
+      if (current == target)
+        break;
+      for (int edge = graph.firstEdge(current); edge < graph.firstEdge(current + 1); edge++) {
+        int succ = graph.target(edge);
+        if (workspace.isSettled(succ))
+          continue;
+        double newCost = workspace.cost(current) + graph.weight(edge);
+        if (newCost < workspace.cost(succ)) {
+          workspace.reach(succ, newCost, current);
+          queue.insertOrDecrease(succ, newCost + landmarks.lowerBound(succ, target));
+        }
+      }
+    }
+    settledCount.add(settledNodes);
+    if (workspace.cost(target) == Double.POSITIVE_INFINITY)
+      return RouteCache.NO_PATH;
+    return new RouteCache.Entry(pathTo(target, workspace), workspace.cost(target));
+  }
+
+  /**
+   * Finds the shortest route between two nodes with two searches through a contraction hierarchy:
+   * one forward from the source over upward edges, and one backward from the target over downward
+   * edges, so that both only move towards higher ranked nodes. The highest ranked node of every
+   * shortest path is reached by both searches, and each search stops once the smallest cost left
+   * in its queue is no less than the cost of the shortest path completed so far. The shortcuts
+   * along the path are then unpacked into the nodes of the original graph.
+   *
+   * @param graph     the compressed graph to search
+   * @param source    the id of the starting node
+   * @param target    the id of the destination node
+   * @param hierarchy a contraction hierarchy built from graph
+   * @return the ids along the shortest path from source to target with its cost, or
+   *         RouteCache.NO_PATH when there is no path
+   */
+  protected RouteCache.Entry hierarchyRoute(CompressedGraph<NodeType> graph, int source,
+      int target, ContractionHierarchy hierarchy) {
+    // both searches record the hierarchy edge they reached each node through as its
+    // "predecessor"
+    SearchWorkspace forwardSearch = workspace(0, graph.getNodeCount());
+    SearchWorkspace backwardSearch = workspace(1, graph.getNodeCount());
+    IndexedMinHeap forwardQueue = forwardSearch.queue();
+    IndexedMinHeap backwardQueue = backwardSearch.queue();
+    forwardSearch.reach(source, 0.0, -1);
+    backwardSearch.reach(target, 0.0, -1);
+    forwardQueue.insertOrDecrease(source, 0.0);
+    backwardQueue.insertOrDecrease(target, 0.0);
+
+    double best = Double.POSITIVE_INFINITY;
+    int meeting = -1;
+    int settled = 0;
+    while (true) {
+      boolean forwardDone = forwardQueue.isEmpty() || forwardQueue.peekKey() >= best;
+      boolean backwardDone = backwardQueue.isEmpty() || backwardQueue.peekKey() >= best;
+      if (forwardDone && backwardDone)
+        break;
+      boolean forward = backwardDone
+          || (!forwardDone && forwardQueue.peekKey() <= backwardQueue.peekKey());
+      int current = forward ? forwardQueue.poll() : backwardQueue.poll();
+      settled++;
+      if (forwardSearch.cost(current) + backwardSearch.cost(current) < best) {
+        best = forwardSearch.cost(current) + backwardSearch.cost(current);
+        meeting = current;
+      }
+      if (forward) {
+        for (int index = hierarchy.firstUpwardEdge(current);
+            index < hierarchy.firstUpwardEdge(current + 1); index++) {
+          int edge = hierarchy.upwardEdge(index);
+          int succ = hierarchy.target(edge);
+          double newCost = forwardSearch.cost(current) + hierarchy.weight(edge);
+          if (newCost < forwardSearch.cost(succ)) {
+            forwardSearch.reach(succ, newCost, edge);
+            forwardQueue.insertOrDecrease(succ, newCost);
+          }
+        }
+      } else {
+        for (int index = hierarchy.firstDownwardEdge(current);
+            index < hierarchy.firstDownwardEdge(current + 1); index++) {
+          int edge = hierarchy.downwardEdge(index);
+          int pred = hierarchy.source(edge);
+          double newCost = backwardSearch.cost(current) + hierarchy.weight(edge);
+          if (newCost < backwardSearch.cost(pred)) {
+            backwardSearch.reach(pred, newCost, edge);
+            backwardQueue.insertOrDecrease(pred, newCost);
           }
         }
       }
     }
-    // If the loop exits the Dijkstra algo, it means there is no path found
-    throw new NoSuchElementException("No path exists between " + start + " and " + end);
+    settledCount.add(settled);
+    if (meeting < 0)
+      return RouteCache.NO_PATH;
+
+    // collect the hierarchy edges from the source up to the meeting node and down to the target,
+    // then unpack each of them in order
+    LinkedList<Integer> edges = new LinkedList<>();
+    for (int id = meeting; forwardSearch.predecessor(id) >= 0;
+        id = hierarchy.source(forwardSearch.predecessor(id)))
+      edges.addFirst(forwardSearch.predecessor(id));
+    for (int id = meeting; backwardSearch.predecessor(id) >= 0;
+        id = hierarchy.target(backwardSearch.predecessor(id)))
+      edges.addLast(backwardSearch.predecessor(id));
+    List<Integer> ids = new ArrayList<>();
+    ids.add(source);
+    for (int edge : edges)
+      hierarchy.unpack(edge, ids);
+    int[] path = new int[ids.size()];
+    for (int i = 0; i < path.length; i++)
+      path[i] = ids.get(i);
+    return new RouteCache.Entry(path, best);
+  }
+
+  /**
+   * Follows predecessors back from the target node to the start of a search.
+   *
+   * @param target    the id of the last node on the path
+   * @param workspace the workspace of the search that reached target
+   * @return the ids of the nodes along the path, from its start through target
+   */
+  protected static int[] pathTo(int target, SearchWorkspace workspace) {
+    int length = 0;
+    for (int id = target; id >= 0; id = workspace.predecessor(id))
+      length++;
+    int[] path = new int[length];
+    for (int id = target; id >= 0; id = workspace.predecessor(id))
+      path[--length] = id;
+    return path;
+  }
+
+  /**
+   * Creates a route through the nodes with the provided ids, looking up the weight of each leg.
+   *
+   * @param graph the compressed graph that the path was found in
+   * @param path  the ids of the nodes along the path, from start to end
+   * @param cost  the total cost of the path
+   * @return the route along that path
+   */
+  protected Route<NodeType> toRoute(CompressedGraph<NodeType> graph, int[] path, double cost) {
+    List<NodeType> data = new ArrayList<>(path.length);
+    double[] legCosts = new double[path.length - 1];
+    for (int i = 0; i < path.length; i++) {
+      data.add(graph.dataOf(path[i]));
+      if (i > 0)
+        legCosts[i - 1] = graph.weightBetween(path[i - 1], path[i]);
+    }
+    return new Route<>(data, legCosts, cost);
+  }
+
+  /**
+   * This helper method computes the shortest path between the provided start and end locations,
+   * and returns a chain of SearchNodes describing it. The SearchNode that is returned by this
+   * method is represents the end of the shortest path that is found: it's cost is the cost of that
+   * shortest path, and the nodes linked together through predecessor references represent all of
+   * the nodes along that shortest path (ordered from end to start).
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return SearchNode for the final end node within the shortest path
+   * @throws NoSuchElementException when no path from start to end is found or when either start or
+   *                                end data do not correspond to a graph node
+   */
+  protected SearchNode computeShortestPath(NodeType start, NodeType end) {
+    long version = this.version.get();
+    CompressedGraph<NodeType> graph = snapshot();
+    int source = graph.idOf(start);
+    int target = graph.idOf(end);
+    if (source < 0 || target < 0) {
+      throw new NoSuchElementException(start + "or" + end + "Not found in the graph");
+    }
+
+    Route<NodeType> route = route(graph, version, source, target);
+    if (!route.isFound()) {
+      // If the search runs out of nodes before the end, it means there is no path found
+      throw new NoSuchElementException("No path exists between " + start + " and " + end);
+    }
+
+    // Link SearchNodes together along the route, from the start to the end
+    materialize();
+    SearchNode searchNode = null;
+    double cost = 0.0;
+    for (int i = 0; i < route.getNodes().size(); i++) {
+      if (i > 0)
+        cost += route.getLegCost(i - 1);
+      searchNode = new SearchNode(nodes.get(route.getNodes().get(i)), cost, searchNode);
+    }
+    return searchNode;
   }
 
   /**
@@ -291,4 +1041,436 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     }
     Assertions.assertNull(endNode, "Should be null since no path from E to L");
   }
+
+  @Test
+  public void test4() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertEdge("A", "B", 2.0);
+    graph.insertEdge("A", "C", 9.0);
+    graph.insertEdge("B", "C", 3.0);
+
+    // The snapshot holds every edge of the graph in compressed form
+    CompressedGraph<String> compressed = graph.snapshot();
+    Assertions.assertEquals(3, compressed.getNodeCount());
+    Assertions.assertEquals(3, compressed.getEdgeCount());
+    int a = compressed.idOf("A");
+    Assertions.assertEquals(2, compressed.firstEdge(a + 1) - compressed.firstEdge(a));
+    Assertions.assertEquals(-1, compressed.idOf("Z"));
+    Assertions.assertEquals(5.0, graph.shortestPathCost("A", "C"));
+
+    // Changing the graph replaces the snapshot that searches use
+    graph.insertEdge("A", "C", 1.0);
+    Assertions.assertNotSame(compressed, graph.snapshot());
+    Assertions.assertEquals("[A, C]", graph.shortestPathData("A", "C").toString());
+  }
+
+  @Test
+  public void test5() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertNode("D");
+    graph.insertNode("E");
+    graph.insertEdge("A", "B", 4.0);
+    graph.insertEdge("A", "C", 1.0);
+    graph.insertEdge("C", "B", 2.0);
+    graph.insertEdge("B", "D", 5.0);
+
+    // Every reachable node is in the tree, ordered by cost
+    ShortestPathTree<String> tree = graph.shortestPathTree("A");
+    Assertions.assertEquals(4, tree.size());
+    Assertions.assertEquals("A", tree.getSource());
+    Assertions.assertEquals("C", tree.getNodeAt(1));
+    Assertions.assertEquals("B", tree.getNodeAt(2));
+    Assertions.assertEquals(8.0, tree.getCost("D"));
+    Assertions.assertEquals("[A, C, B, D]", tree.getPathTo("D").toString());
+    Assertions.assertFalse(tree.contains("E"));
+
+    // A bounded search stops after settling the requested number of nodes
+    ShortestPathTree<String> bounded = graph.shortestPathTree("A", 2);
+    Assertions.assertEquals(2, bounded.size());
+    Assertions.assertEquals("C", bounded.getNodeAt(1));
+  }
+
+  @Test
+  public void test6() {
+    // Every query mode finds paths of the same cost on a random graph
+    DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+    graph.setAllPairsLimit(0);
+    java.util.Random random = new java.util.Random(400);
+    for (int i = 0; i < 60; i++)
+      graph.insertNode(i);
+    for (int i = 0; i < 240; i++)
+      graph.insertEdge(random.nextInt(60), random.nextInt(60), 1.0 + random.nextInt(20));
+
+    for (int start = 0; start < 60; start += 7) {
+      for (int end = 0; end < 60; end += 3) {
+        graph.setQueryMode(QueryMode.DIJKSTRA);
+        Route<Integer> forward = graph.shortestRoute(start, end);
+        for (QueryMode mode : QueryMode.values()) {
+          graph.setQueryMode(mode);
+          Route<Integer> route = graph.shortestRoute(start, end);
+          Assertions.assertEquals(forward.isFound(), route.isFound());
+          if (forward.isFound()) {
+            Assertions.assertEquals(forward.getTotalCost(), route.getTotalCost(), 1e-9);
+            Assertions.assertEquals(start, route.getNodes().get(0));
+            Assertions.assertEquals(end, route.getNodes().get(route.getNodes().size() - 1));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void test7() {
+    // A -> B -> C -> D is cheaper than the direct edge from A to D
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertNode("D");
+    graph.insertEdge("A", "B", 1.0);
+    graph.insertEdge("B", "C", 2.0);
+    graph.insertEdge("C", "D", 3.0);
+    graph.insertEdge("A", "D", 10.0);
+    CompressedGraph<String> compressed = graph.snapshot();
+    ContractionHierarchy hierarchy = ContractionHierarchy.build(compressed);
+    Assertions.assertTrue(hierarchy.isFor(compressed));
+
+    // Every hierarchy edge unpacks into original edges with the same total weight
+    for (int id = 0; id < compressed.getNodeCount(); id++) {
+      for (int index = hierarchy.firstUpwardEdge(id); index < hierarchy.firstUpwardEdge(id + 1);
+          index++) {
+        int edge = hierarchy.upwardEdge(index);
+        List<Integer> path = new ArrayList<>();
+        path.add(hierarchy.source(edge));
+        hierarchy.unpack(edge, path);
+        double cost = 0.0;
+        for (int i = 1; i < path.size(); i++)
+          cost += compressed.weightBetween(path.get(i - 1), path.get(i));
+        Assertions.assertEquals(hierarchy.weight(edge), cost);
+      }
+    }
+
+    // Paths found through shortcuts list every node of the original graph along the way
+    graph.setAllPairsLimit(0);
+    graph.setQueryMode(QueryMode.CH);
+    Assertions.assertEquals("[A, B, C, D]", graph.shortestPathData("A", "D").toString());
+    Assertions.assertEquals(6.0, graph.shortestPathCost("A", "D"));
+    Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("D", "A"));
+
+    // Nodes of a dense graph are left uncontracted in the core, which queries search directly
+    DijkstraGraph<Integer, Double> dense = new DijkstraGraph<>();
+    dense.setAllPairsLimit(0);
+    java.util.Random random = new java.util.Random(400);
+    for (int i = 0; i < 30; i++)
+      dense.insertNode(i);
+    for (int i = 0; i < 2000; i++)
+      dense.insertEdge(random.nextInt(30), random.nextInt(30), 1.0 + random.nextInt(20));
+    Assertions.assertEquals(30, ContractionHierarchy.build(dense).getCoreSize());
+    for (int end = 1; end < 30; end++) {
+      dense.setQueryMode(QueryMode.DIJKSTRA);
+      double expected = dense.shortestPathCost(0, end);
+      dense.setQueryMode(QueryMode.CH);
+      Assertions.assertEquals(expected, dense.shortestPathCost(0, end), 1e-9);
+    }
+
+    // Contracting a node between two edges that weigh nothing still adds the shortcut around it
+    DijkstraGraph<String, Double> free = new DijkstraGraph<>();
+    free.setAllPairsLimit(0);
+    free.insertNode("A");
+    free.insertNode("B");
+    free.insertNode("C");
+    free.insertEdge("A", "B", 0.0);
+    free.insertEdge("B", "C", 0.0);
+    for (QueryMode mode : QueryMode.values()) {
+      free.setQueryMode(mode);
+      Assertions.assertEquals("[A, B, C]", free.shortestPathData("A", "C").toString());
+      Assertions.assertEquals(0.0, free.shortestPathCost("A", "C"));
+    }
+  }
+
+  @Test
+  public void test8() {
+    // Distance tables answer the same queries as searches on a random graph
+    DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+    java.util.Random random = new java.util.Random(400);
+    for (int i = 0; i < 60; i++)
+      graph.insertNode(i);
+    for (int i = 0; i < 240; i++)
+      graph.insertEdge(random.nextInt(60), random.nextInt(60), 1.0 + random.nextInt(20));
+
+    for (int start = 0; start < 60; start += 7) {
+      graph.setAllPairsLimit(0);
+      ShortestPathTree<Integer> searched = graph.shortestPathTree(start, 11);
+      List<Route<Integer>> routes = new ArrayList<>();
+      for (int end = 0; end < 60; end++)
+        routes.add(graph.shortestRoute(start, end));
+
+      graph.setAllPairsLimit(DEFAULT_ALL_PAIRS_LIMIT);
+      ShortestPathTree<Integer> looked = graph.shortestPathTree(start, 11);
+      Assertions.assertEquals(searched.size(), looked.size());
+      for (int rank = 0; rank < looked.size(); rank++)
+        Assertions.assertEquals(searched.getCostAt(rank), looked.getCostAt(rank), 1e-9);
+      for (int end = 0; end < 60; end++) {
+        Route<Integer> route = graph.shortestRoute(start, end);
+        Assertions.assertEquals(routes.get(end).isFound(), route.isFound());
+        Assertions.assertEquals(routes.get(end).getTotalCost(), route.getTotalCost(), 1e-9);
+        if (route.isFound())
+          Assertions.assertEquals(end, route.getNodes().get(route.getNodes().size() - 1));
+      }
+    }
+    Assertions.assertNotNull(graph.distances);
+  }
+
+  @Test
+  public void test9() {
+    // Once warmed up, a query allocates little more than the route it returns
+    java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory
+        .getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+      return;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+      return;
+
+    // a 50x50 grid, where a query that allocated arrays for every node would need over 50KB
+    DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+    graph.setAllPairsLimit(0);
+    graph.setRouteCacheCapacity(0);
+    for (int i = 0; i < 2500; i++)
+      graph.insertNode(i);
+    for (int i = 0; i < 2500; i++) {
+      if (i % 50 < 49) {
+        graph.insertEdge(i, i + 1, 1.0 + i % 7);
+        graph.insertEdge(i + 1, i, 1.0 + i % 5);
+      }
+      if (i < 2450) {
+        graph.insertEdge(i, i + 50, 1.0 + i % 3);
+        graph.insertEdge(i + 50, i, 1.0 + i % 11);
+      }
+    }
+
+    long threadId = Thread.currentThread().getId();
+    for (QueryMode mode : new QueryMode[] {QueryMode.DIJKSTRA, QueryMode.BIDIRECTIONAL,
+        QueryMode.ALT}) {
+      graph.setQueryMode(mode);
+      for (int i = 0; i < 2000; i++)
+        graph.shortestRoute(i % 2500, 2499 - i % 2500);
+      long before = threads.getThreadAllocatedBytes(threadId);
+      long pathNodes = 0;
+      for (int i = 0; i < 100; i++)
+        pathNodes += graph.shortestRoute(i * 25, 2499 - i * 25).getNodes().size();
+      long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+      Assertions.assertTrue(allocated < 100 * 256 + pathNodes * 64,
+          mode + " allocated " + allocated + " bytes for 100 queries");
+    }
+  }
+
+  @Test
+  public void test10() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.setAllPairsLimit(0);
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertEdge("A", "B", 2.0);
+    graph.insertEdge("B", "C", 3.0);
+    RouteCache cache = graph.getRouteCache();
+
+    // Repeated queries are answered from the cache, including pairs with no path
+    Assertions.assertEquals(5.0, graph.shortestPathCost("A", "C"));
+    Assertions.assertEquals("[A, B, C]", graph.shortestPathData("A", "C").toString());
+    Assertions.assertFalse(graph.shortestRoute("C", "A").isFound());
+    Assertions.assertFalse(graph.shortestRoute("C", "A").isFound());
+    Assertions.assertEquals(2, cache.getMissCount());
+    Assertions.assertEquals(2, cache.getHitCount());
+
+    // Changing the graph invalidates every cached route
+    long version = graph.getVersion();
+    graph.insertEdge("A", "C", 1.0);
+    Assertions.assertTrue(graph.getVersion() > version);
+    Assertions.assertEquals("[A, C]", graph.shortestPathData("A", "C").toString());
+    Assertions.assertEquals(1, cache.getInvalidationCount());
+    Assertions.assertEquals(3, cache.getMissCount());
+    // a query that read the version from before the change misses without emptying the cache
+    Assertions.assertNull(cache.get(version, 0, 2));
+    Assertions.assertEquals(1, cache.size());
+    Assertions.assertEquals(1, cache.getInvalidationCount());
+    Assertions.assertEquals("[A, C]", graph.shortestPathData("A", "C").toString());
+    Assertions.assertEquals(3, cache.getHitCount());
+
+    // The least recently used route is evicted when the cache weighs too much
+    graph.setRouteCacheCapacity(2 * (RouteCache.ENTRY_WEIGHT + 2));
+    graph.shortestRoute("A", "B");
+    graph.shortestRoute("A", "C");
+    graph.shortestRoute("B", "C");
+    Assertions.assertEquals(2, cache.size());
+    Assertions.assertEquals(1, cache.getEvictionCount());
+    long hits = cache.getHitCount();
+    graph.shortestRoute("A", "C");
+    Assertions.assertEquals(hits + 1, cache.getHitCount());
+    graph.shortestRoute("A", "B");
+    Assertions.assertEquals(hits + 1, cache.getHitCount());
+  }
+
+  /**
+   * Tests that a GraphBuilder replaces the contents of a graph, resolving duplicate edges the way
+   * insertEdge does, and that clear empties a graph along with what was derived from it.
+   */
+  @Test
+  public void test11() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("Old");
+    graph.insertNode("A");
+    graph.insertEdge("Old", "A", 1.0);
+    Assertions.assertEquals(1.0, graph.shortestPathCost("Old", "A"));
+
+    GraphBuilder<String, Double> builder = new GraphBuilder<>(2, 2);
+    builder.addEdge("A", "B", 4.0);
+    builder.addEdge("B", "C", 3.0);
+    builder.addEdge("A", "C", 9.0);
+    builder.addEdge(0, 1, 2.0); // A to B again, by id
+    Assertions.assertEquals(3, builder.getNodeCount());
+    Assertions.assertEquals(3, builder.getEdgeCount());
+    long version = graph.getVersion();
+    builder.build(graph);
+    Assertions.assertTrue(graph.getVersion() > version);
+
+    Assertions.assertFalse(graph.containsNode("Old"));
+    Assertions.assertEquals(3, graph.getNodeCount());
+    Assertions.assertEquals(3, graph.getEdgeCount());
+    Assertions.assertEquals(2.0, graph.getEdge("A", "B").doubleValue());
+    Assertions.assertEquals("[A, B, C]", graph.shortestPathData("A", "C").toString());
+    Assertions.assertEquals(5.0, graph.shortestPathCost("A", "C"));
+    // the builder's edge lists behave like those made one edge at a time
+    graph.insertEdge("C", "A", 1.0);
+    Assertions.assertTrue(graph.removeEdge("A", "B"));
+    Assertions.assertEquals(9.0, graph.shortestPathCost("A", "C"));
+
+    graph.clear();
+    Assertions.assertEquals(0, graph.getNodeCount());
+    Assertions.assertEquals(0, graph.getEdgeCount());
+    Assertions.assertFalse(graph.shortestRoute("A", "C").isFound());
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> builder.addEdge(0, 3, 1.0));
+  }
+
+  /**
+   * Tests that a graph written to a graph file and mapped again has the same nodes, edges and
+   * shortest paths, with or without the edges entering each node, and can be loaded into a
+   * DijkstraGraph that searches it directly.
+   */
+  @Test
+  public void test12() throws IOException {
+    DijkstraGraph<String, Double> original = ShortestPathBenchmark.syntheticCampus(12,
+        new Random(12));
+    original.insertNode("Caf\u00e9 \"Quote\"");
+    original.insertEdge("L0", "Caf\u00e9 \"Quote\"", 5.0);
+    CompressedGraph<String> expected = original.snapshot();
+    Path file = Files.createTempFile("campus", ".graph");
+    try {
+      for (boolean includeReverse : new boolean[] {true, false}) {
+        MappedGraph.write(expected, file, includeReverse);
+        Assertions.assertTrue(MappedGraph.isGraphFile(file));
+        MappedGraph mapped = MappedGraph.open(file);
+        Assertions.assertEquals(expected.getNodeCount(), mapped.getNodeCount());
+        Assertions.assertEquals(expected.getEdgeCount(), mapped.getEdgeCount());
+        Assertions.assertEquals(expected.fingerprint(), mapped.fingerprint());
+        for (int id = 0; id < expected.getNodeCount(); id++) {
+          Assertions.assertEquals(expected.dataOf(id), mapped.dataOf(id));
+          Assertions.assertEquals(id, mapped.idOf(expected.dataOf(id)));
+          Assertions.assertEquals(expected.firstEdge(id + 1), mapped.firstEdge(id + 1));
+          Assertions.assertEquals(expected.firstReverseEdge(id + 1),
+              mapped.firstReverseEdge(id + 1));
+          // entering edges computed from the leaving ones may be in a different order
+          List<String> entering = new ArrayList<>();
+          List<String> mappedEntering = new ArrayList<>();
+          for (int edge = expected.firstReverseEdge(id); edge < expected.firstReverseEdge(id + 1);
+              edge++) {
+            entering.add(expected.source(edge) + ":" + expected.reverseWeight(edge));
+            mappedEntering.add(mapped.source(edge) + ":" + mapped.reverseWeight(edge));
+          }
+          Collections.sort(entering);
+          Collections.sort(mappedEntering);
+          Assertions.assertEquals(entering, mappedEntering);
+        }
+        for (int edge = 0; edge < expected.getEdgeCount(); edge++) {
+          Assertions.assertEquals(expected.target(edge), mapped.target(edge));
+          Assertions.assertEquals(expected.weight(edge), mapped.weight(edge));
+        }
+        Assertions.assertEquals(-1, mapped.idOf("Nowhere"));
+
+        DijkstraGraph<String, Double> loaded = new DijkstraGraph<>();
+        loaded.setAllPairsLimit(0);
+        loaded.load(mapped);
+        Assertions.assertSame(mapped, loaded.snapshot());
+        // nodes and counts are answered from the mapped graph until nodes are needed
+        Assertions.assertEquals(original.getNodeCount(), loaded.getNodeCount());
+        Assertions.assertEquals(original.getEdgeCount(), loaded.getEdgeCount());
+        Assertions.assertEquals(original.getAllNodes(), loaded.getAllNodes());
+        Assertions.assertTrue(loaded.containsNode("L140"));
+        Assertions.assertEquals(original.shortestRoute("L3", "L140").getNodes(),
+            loaded.shortestRoute("L3", "L140").getNodes());
+        Assertions.assertSame(mapped, loaded.unloaded);
+        Assertions.assertEquals(original.shortestPathData("L3", "L140"),
+            loaded.shortestPathData("L3", "L140"));
+        Assertions.assertNull(loaded.unloaded);
+        Assertions.assertSame(mapped, loaded.snapshot());
+        Assertions.assertEquals(original.getEdgeCount(), loaded.getEdgeCount());
+        Assertions.assertEquals(original.shortestPathCost("L140", "Caf\u00e9 \"Quote\""),
+            loaded.shortestPathCost("L140", "Caf\u00e9 \"Quote\""));
+        // changing the loaded graph replaces the mapped snapshot with a new one
+        loaded.removeEdge("L0", "Caf\u00e9 \"Quote\"");
+        Assertions.assertNotSame(mapped, loaded.snapshot());
+        Assertions.assertFalse(loaded.shortestRoute("L0", "Caf\u00e9 \"Quote\"").isFound());
+      }
+
+      Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 100));
+      Assertions.assertThrows(IOException.class, () -> MappedGraph.open(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests that a symbol table finds the id of every name it was built from, including names
+   * outside ASCII, and no id for names it was not built from, and that snapshots of graphs of
+   * named nodes look their names up in one.
+   */
+  @Test
+  public void test13() {
+    String[] names = new String[5000];
+    for (int id = 0; id < names.length; id++)
+      names[id] = "Location " + id;
+    names[7] = "Caf\u00e9";
+    names[8] = "\u6c34 \ud83c\udf32"; // a character outside the BMP takes a surrogate pair
+    names[9] = "";
+    SymbolTable symbols = SymbolTable.of(names);
+    Assertions.assertEquals(names.length, symbols.size());
+    for (int id = 0; id < names.length; id++) {
+      Assertions.assertEquals(id, symbols.idOf(names[id]));
+      Assertions.assertEquals(names[id], symbols.nameOf(id));
+    }
+    Assertions.assertEquals(8, symbols.idOf(new StringBuilder(names[8])));
+    Assertions.assertEquals(-1, symbols.idOf("Location 5000"));
+    Assertions.assertEquals(-1, symbols.idOf("Location 1 "));
+    Assertions.assertEquals(-1, symbols.idOf("Cafe"));
+    Assertions.assertEquals(-1, symbols.idOf("\ud83c")); // an unpaired surrogate
+    Assertions.assertEquals(-1, symbols.idOf(null));
+    Assertions.assertEquals(-1, SymbolTable.of(new String[0]).idOf("Location 1"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> SymbolTable.of(new String[] {"A", "B", "A"}));
+
+    DijkstraGraph<String, Double> graph = ShortestPathBenchmark.syntheticCampus(12,
+        new Random(13));
+    CompressedGraph<String> snapshot = graph.snapshot();
+    Assertions.assertNotNull(snapshot.symbols);
+    for (int id = 0; id < snapshot.getNodeCount(); id++)
+      Assertions.assertEquals(id, snapshot.idOf(snapshot.dataOf(id)));
+    Assertions.assertEquals(-1, snapshot.idOf("Nowhere"));
+  }
 }
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * The cost of the shortest path between every pair of nodes in a CompressedGraph, along with the
+ * first node after the start of each of those paths (its next hop). Once built, the cost of any
+ * shortest path is a single array lookup, and the path itself is found by following next hops from
+ * its start, so these tables suit graphs small enough that their n*n entries fit comfortably in
+ * memory.
+ *
+ * Both tables are stored row by row in flat arrays, where the entry for the path from s to t is at
+ * index s*n+t. Next hops are stored as shorts, which limits these tables to graphs with at most
+ * Short.MAX_VALUE nodes.
+ */
+public class DistanceTable {
+
+  // the most nodes a graph can have for its next hops to fit in a short
+  public static final int MAX_NODES = Short.MAX_VALUE;
+
+  protected final int nodeCount;
+  protected final long fingerprint; // of the graph these tables were built from
+  protected final double[] costs; // cost of each shortest path, or infinity when there is none
+  protected final short[] nextHops; // node after the start of each shortest path, or -1
+
+  protected DistanceTable(int nodeCount, long fingerprint, double[] costs, short[] nextHops) {
+    this.nodeCount = nodeCount;
+    this.fingerprint = fingerprint;
+    this.costs = costs;
+    this.nextHops = nextHops;
+  }
+
+  /**
+   * Computes the tables for the provided graph with one run of Dijkstra's algorithm backward from
+   * each of its nodes, where the runs for different nodes are spread across the common fork-join
+   * pool. Every next hop towards a target comes from the same run, so following them from any
+   * start always leads to that target.
+   *
+   * @param graph the graph to build tables for
+   * @return the tables for that graph
+   * @throws IllegalArgumentException if graph has more than MAX_NODES nodes
+   */
+  public static DistanceTable build(CompressedGraph<?> graph) {
+    int nodeCount = graph.getNodeCount();
+    if (nodeCount > MAX_NODES)
+      throw new IllegalArgumentException("Too many nodes for a distance table: " + nodeCount);
+    double[] costs = new double[nodeCount * nodeCount];
+    short[] nextHops = new short[nodeCount * nodeCount];
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    Arrays.fill(nextHops, (short) -1);
+    IntStream.range(0, nodeCount).parallel()
+        .forEach(target -> fillColumn(graph, target, costs, nextHops));
+    return new DistanceTable(nodeCount, graph.fingerprint(), costs, nextHops);
+  }
+
+  // fills the column of both tables for the paths ending at target, by following the edges
+  // entering each node
+  private static void fillColumn(CompressedGraph<?> graph, int target, double[] costs,
+      short[] nextHops) {
+    int nodeCount = graph.getNodeCount();
+    IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+    BitSet settled = new BitSet(nodeCount);
+    costs[target * nodeCount + target] = 0.0;
+    nextHops[target * nodeCount + target] = (short) target;
+    queue.insertOrDecrease(target, 0.0);
+
+    while (!queue.isEmpty()) {
+      int current = queue.poll();
+      settled.set(current);
+      double cost = costs[current * nodeCount + target];
+      for (int edge = graph.firstReverseEdge(current); edge < graph.firstReverseEdge(current + 1);
+          edge++) {
+        int pred = graph.source(edge);
+        if (settled.get(pred))
+          continue;
+        double newCost = cost + graph.reverseWeight(edge);
+        if (newCost < costs[pred * nodeCount + target]) {
+          costs[pred * nodeCount + target] = newCost;
+          nextHops[pred * nodeCount + target] = (short) current;
+          queue.insertOrDecrease(pred, newCost);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param graph a compressed graph
+   * @return true if these tables were built from a graph with the same nodes and edges
+   */
+  public boolean isFor(CompressedGraph<?> graph) {
+    return graph.getNodeCount() == nodeCount && graph.fingerprint() == fingerprint;
+  }
+
+  /**
+   * @param source the id of the first node of a path
+   * @param target the id of the last node of that path
+   * @return the cost of the shortest path from source to target, or infinity when there is none
+   */
+  public double cost(int source, int target) {
+    return costs[source * nodeCount + target];
+  }
+
+  /**
+   * @param source the id of the first node of a path
+   * @param target the id of the last node of that path
+   * @return the id of the node after source on the shortest path to target (which is source
+   *         itself when target is source), or -1 when there is no such path
+   */
+  public int nextHop(int source, int target) {
+    return nextHops[source * nodeCount + target];
+  }
+
+  /**
+   * Follows next hops from source to target.
+   *
+   * @param source the id of the first node of the path
+   * @param target the id of the last node of the path
+   * @return the ids of the nodes along the shortest path from source to target, or null when
+   *         there is no such path
+   */
+  public int[] path(int source, int target) {
+    if (nextHop(source, target) < 0)
+      return null;
+    int length = 1;
+    for (int id = source; id != target; id = nextHop(id, target))
+      length++;
+    int[] path = new int[length];
+    path[0] = source;
+    for (int i = 1; i < length; i++)
+      path[i] = nextHop(path[i - 1], target);
+    return path;
+  }
+
+  /**
+   * Finds the nodes that can be reached most cheaply from a source node.
+   *
+   * @param source the id of the node to start from
+   * @param limit  the maximum number of nodes to return, including source
+   * @return the ids of up to limit reachable nodes in order of increasing cost, starting with
+   *         source itself
+   */
+  public int[] closest(int source, int limit) {
+    int row = source * nodeCount;
+    int[] closest = new int[Math.max(0, Math.min(limit, nodeCount))];
+    if (closest.length == 0)
+      return closest;
+    closest[0] = source;
+    int count = 1;
+    // insert each other reachable node into the sorted part of closest, when it belongs there
+    for (int id = 0; id < nodeCount; id++) {
+      double cost = costs[row + id];
+      if (id == source || cost == Double.POSITIVE_INFINITY)
+        continue;
+      if (count == closest.length && cost >= costs[row + closest[count - 1]])
+        continue;
+      int position = count < closest.length ? count++ : count - 1;
+      while (position > 1 && costs[row + closest[position - 1]] > cost) {
+        closest[position] = closest[position - 1];
+        position--;
+      }
+      closest[position] = id;
+    }
+    return Arrays.copyOf(closest, count);
+  }
+}
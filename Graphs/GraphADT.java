@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -32,6 +33,16 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
    */
   public boolean removeNode(NodeType data);
 
+  /**
+   * Remove every node and edge from the graph. This default implementation
+   * removes the nodes one at a time, and implementations should override it
+   * to drop them all at once.
+   */
+  public default void clear() {
+    for (NodeType node : getAllNodes())
+      removeNode(node);
+  }
+
   /**
    * Check whether the graph contains a node with the provided data.
    *
@@ -137,5 +148,93 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
    *         start node to the end node
    */
   public double shortestPathCost(NodeType start, NodeType end);
+
+  /**
+   * Returns the nodes along the shortest path from the node with the provided
+   * start value to the node with the provided end value, together with the
+   * weight of each edge along that path and its total cost, from a single
+   * search. Unlike shortestPathData and shortestPathCost, this method does
+   * not throw when there is no such path. This default implementation looks
+   * up each edge of the path separately, and implementations should override
+   * it to build the route from their search directly.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end the data item in the destination node for the path
+   * @return the shortest route from start to end, or Route.none() if either
+   *         node cannot be found in the graph or there is no directed path
+   *         from the start node to the end node
+   */
+  public default Route<NodeType> shortestRoute(NodeType start, NodeType end) {
+    List<NodeType> path;
+    try {
+      path = shortestPathData(start, end);
+    } catch (NoSuchElementException e) {
+      return Route.none();
+    }
+    double[] legCosts = new double[path.size() - 1];
+    double totalCost = 0.0;
+    for (int i = 0; i < legCosts.length; i++) {
+      legCosts[i] = getEdge(path.get(i), path.get(i + 1)).doubleValue();
+      totalCost += legCosts[i];
+    }
+    return new Route<>(path, legCosts, totalCost);
+  }
+
+  /**
+   * Returns the shortest paths from the node with the provided start value
+   * to every node that can be reached from it, with the reached nodes
+   * ordered by the cost of their shortest path.
+   *
+   * @param start the data item in the starting node for every path
+   * @return the tree of shortest paths leaving start
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   */
+  public default ShortestPathTree<NodeType> shortestPathTree(NodeType start) {
+    return shortestPathTree(start, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the shortest paths from the node with the provided start value
+   * to the limit-1 other nodes that can be reached most cheaply from it, with
+   * the reached nodes ordered by the cost of their shortest path. This
+   * default implementation finds the path to each node separately, and
+   * implementations that can search from a single source should override it.
+   *
+   * @param start the data item in the starting node for every path
+   * @param limit the maximum number of nodes in the tree, including start
+   * @return the tree of the cheapest shortest paths leaving start
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   */
+  public default ShortestPathTree<NodeType> shortestPathTree(NodeType start, int limit) {
+    if (!containsNode(start))
+      throw new NoSuchElementException(start + " Not found in the graph");
+    List<List<NodeType>> paths = new ArrayList<>();
+    List<Double> costs = new ArrayList<>();
+    for (NodeType node : getAllNodes()) {
+      if (node.equals(start))
+        continue;
+      try {
+        paths.add(shortestPathData(start, node));
+        costs.add(shortestPathCost(start, node));
+      } catch (NoSuchElementException e) {
+        // nodes that cannot be reached are left out of the tree
+      }
+    }
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < paths.size(); i++)
+      order.add(i);
+    order.sort((a, b) -> Double.compare(costs.get(a), costs.get(b)));
+
+    ShortestPathTree<NodeType> tree = new ShortestPathTree<>(start,
+        Math.min(limit, paths.size() + 1));
+    for (int i = 0; i < order.size() && tree.size() < limit; i++) {
+      List<NodeType> path = paths.get(order.get(i));
+      tree.add(path.get(path.size() - 1), path.get(path.size() - 2),
+          costs.get(order.get(i)));
+    }
+    return tree;
+  }
     
 }
@@ -0,0 +1,191 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the nodes and edges of a graph in bulk, and then replaces the contents of a graph with
+ * them in one step. Nodes are numbered in the order they are first added, so edges can be added
+ * by those numbers (ids) as well as by node data.
+ *
+ * An edge between the same two nodes may be added more than once. Instead of looking for the
+ * existing edge each time, as GraphADT.insertEdge does, the builder keeps every edge it is given
+ * and resolves the duplicates once, when the graph is built, with the same result: the edge keeps
+ * the position it was first added at and the weight it was last given.
+ *
+ * @param NodeType is the data type stored at each graph node
+ * @param EdgeType is the numeric data type stored at each graph edge
+ */
+public class GraphBuilder<NodeType, EdgeType extends Number> {
+
+  // the data of each node, and the id of each node's data
+  protected final List<NodeType> nodes;
+  protected final MapADT<NodeType, Integer> ids;
+
+  protected int[] sources;
+  protected int[] targets;
+  protected Object[] weights;
+  protected int edgeCount = 0;
+  // true once duplicate edges have been resolved, until another edge is added
+  protected boolean resolved = true;
+
+  /**
+   * Creates a builder sized for a graph with the provided number of nodes and edges, which it
+   * grows beyond when needed.
+   *
+   * @param expectedNodes the number of nodes expected
+   * @param expectedEdges the number of edges expected
+   */
+  public GraphBuilder(int expectedNodes, int expectedEdges) {
+    nodes = new ArrayList<>(expectedNodes);
+    ids = ProbingHashtableMap.withCapacity(Math.max(64, expectedNodes * 2));
+    sources = new int[Math.max(16, expectedEdges)];
+    targets = new int[sources.length];
+    weights = new Object[sources.length];
+  }
+
+  public GraphBuilder() {
+    this(64, 256);
+  }
+
+  /**
+   * Creates a builder holding the nodes and edges of a compressed graph, with the same ids.
+   *
+   * @param graph the graph to copy
+   * @return a builder holding the nodes and edges of graph
+   */
+  public static <NodeType> GraphBuilder<NodeType, Double> of(CompressedGraph<NodeType> graph) {
+    GraphBuilder<NodeType, Double> builder =
+        new GraphBuilder<>(graph.getNodeCount(), graph.getEdgeCount());
+    for (int id = 0; id < graph.getNodeCount(); id++)
+      builder.addNode(graph.dataOf(id));
+    for (int id = 0; id < graph.getNodeCount(); id++)
+      for (int edge = graph.firstEdge(id); edge < graph.firstEdge(id + 1); edge++)
+        builder.addEdge(id, graph.target(edge), graph.weight(edge));
+    return builder;
+  }
+
+  /**
+   * Adds a node, unless a node with the same data has already been added.
+   *
+   * @param data the data item stored in the node
+   * @return the id of the node with that data
+   * @throws NullPointerException if data is null
+   */
+  public int addNode(NodeType data) {
+    if (ids.containsKey(data))
+      return ids.get(data); // throws NPE when data's null
+    int id = nodes.size();
+    ids.put(data, id);
+    nodes.add(data);
+    return id;
+  }
+
+  /**
+   * Adds a directed edge, and its nodes when they have not been added yet.
+   *
+   * @param pred   the data item contained in the edge's predecessor node
+   * @param succ   the data item contained in the edge's successor node
+   * @param weight the non-negative data item stored in the edge
+   */
+  public void addEdge(NodeType pred, NodeType succ, EdgeType weight) {
+    addEdge(addNode(pred), addNode(succ), weight);
+  }
+
+  /**
+   * Adds a directed edge between two nodes that have already been added.
+   *
+   * @param source the id of the edge's predecessor node
+   * @param target the id of the edge's successor node
+   * @param weight the non-negative data item stored in the edge
+   * @throws IndexOutOfBoundsException if either id does not belong to a node
+   */
+  public void addEdge(int source, int target, EdgeType weight) {
+    if (source < 0 || source >= nodes.size() || target < 0 || target >= nodes.size())
+      throw new IndexOutOfBoundsException("No node with id " + source + " or " + target);
+    if (edgeCount == sources.length) {
+      sources = Arrays.copyOf(sources, edgeCount * 2);
+      targets = Arrays.copyOf(targets, edgeCount * 2);
+      weights = Arrays.copyOf(weights, edgeCount * 2);
+    }
+    sources[edgeCount] = source;
+    targets[edgeCount] = target;
+    weights[edgeCount++] = weight;
+    resolved = false;
+  }
+
+  /**
+   * @return the number of distinct nodes added
+   */
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  /**
+   * @return the number of distinct edges added, counting an edge added more than once only once
+   */
+  public int getEdgeCount() {
+    resolveDuplicates();
+    return edgeCount;
+  }
+
+  /**
+   * Replaces the nodes and edges of a graph with those added to this builder. BaseGraphs take
+   * them all at once, and other graphs are cleared and then given them one at a time.
+   *
+   * @param graph the graph to fill
+   */
+  public void build(GraphADT<NodeType, EdgeType> graph) {
+    resolveDuplicates();
+    if (graph instanceof BaseGraph) {
+      @SuppressWarnings("unchecked")
+      BaseGraph<NodeType, EdgeType> base = (BaseGraph<NodeType, EdgeType>) graph;
+      base.replaceContents(this);
+      return;
+    }
+    graph.clear();
+    for (NodeType data : nodes)
+      graph.insertNode(data);
+    for (int edge = 0; edge < edgeCount; edge++)
+      graph.insertEdge(nodes.get(sources[edge]), nodes.get(targets[edge]), getWeight(edge));
+  }
+
+  /**
+   * @param edge the index of a resolved edge
+   * @return the weight of that edge
+   */
+  @SuppressWarnings("unchecked")
+  protected EdgeType getWeight(int edge) {
+    return (EdgeType) weights[edge];
+  }
+
+  // removes every edge between two nodes that already have an edge between them, after giving
+  // the earlier edge the later one's weight
+  protected void resolveDuplicates() {
+    if (resolved)
+      return;
+    // indexes+1 of the edges kept so far, by hash of their nodes
+    int[] slots = new int[Integer.highestOneBit(Math.max(16, edgeCount * 2 - 1)) * 2];
+    int mask = slots.length - 1;
+    int kept = 0;
+    for (int edge = 0; edge < edgeCount; edge++) {
+      int source = sources[edge];
+      int target = targets[edge];
+      int hash = source * 0x9e3779b1 + target;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (slots[slot] != 0
+          && (sources[slots[slot] - 1] != source || targets[slots[slot] - 1] != target))
+        slot = (slot + 1) & mask;
+      if (slots[slot] != 0) {
+        weights[slots[slot] - 1] = weights[edge];
+      } else {
+        sources[kept] = source;
+        targets[kept] = target;
+        weights[kept++] = weights[edge];
+        slots[slot] = kept;
+      }
+    }
+    Arrays.fill(weights, kept, edgeCount, null);
+    edgeCount = kept;
+    resolved = true;
+  }
+}
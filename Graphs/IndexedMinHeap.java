@@ -0,0 +1,156 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A 4-ary min heap of dense int ids (from 0 to capacity-1), each ordered by a double key. The heap
+ * tracks the position of every id it contains, so the key of an id already in the heap can be
+ * decreased in place instead of inserting a duplicate entry, and the heap never holds more than
+ * one entry per id.
+ */
+public class IndexedMinHeap {
+
+  // number of children of each heap entry, making the heap shallower than a binary one
+  protected static final int ARITY = 4;
+
+  protected final int[] heap; // ids ordered by heap position
+  protected final int[] positions; // heap position of each id, or -1 when not in the heap
+  protected final double[] keys; // key of each id in the heap
+  protected int size = 0;
+
+  /**
+   * Creates an empty heap for the ids from 0 to capacity-1.
+   *
+   * @param capacity the number of distinct ids this heap can hold
+   */
+  public IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    positions = new int[capacity];
+    keys = new double[capacity];
+    Arrays.fill(positions, -1);
+  }
+
+  /**
+   * @return the number of ids in this heap
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true when this heap contains no ids
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param id the id to check
+   * @return true when id is currently in this heap
+   */
+  public boolean contains(int id) {
+    return positions[id] >= 0;
+  }
+
+  /**
+   * @param id an id currently in this heap
+   * @return the key of that id
+   */
+  public double key(int id) {
+    return keys[id];
+  }
+
+  /**
+   * Adds an id that is not yet in the heap, or lowers the key of an id that is.
+   *
+   * @param id  the id to add or update
+   * @param key the new key for that id
+   * @return true if the heap changed, or false when id is already in the heap with a key no
+   *         greater than key
+   */
+  public boolean insertOrDecrease(int id, double key) {
+    int position = positions[id];
+    if (position < 0) {
+      position = size++;
+    } else if (key >= keys[id]) {
+      return false;
+    }
+    keys[id] = key;
+    siftUp(id, position);
+    return true;
+  }
+
+  /**
+   * @return the key of the id with the smallest key
+   * @throws NoSuchElementException when the heap is empty
+   */
+  public double peekKey() {
+    if (size == 0)
+      throw new NoSuchElementException("The heap is empty");
+    return keys[heap[0]];
+  }
+
+  /**
+   * Removes the id with the smallest key from this heap.
+   *
+   * @return the id that was removed
+   * @throws NoSuchElementException when the heap is empty
+   */
+  public int poll() {
+    if (size == 0)
+      throw new NoSuchElementException("The heap is empty");
+    int min = heap[0];
+    positions[min] = -1;
+    int last = heap[--size];
+    if (size > 0)
+      siftDown(last, 0);
+    return min;
+  }
+
+  /**
+   * Removes every id from this heap, in time proportional to the number of ids it contains.
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++)
+      positions[heap[i]] = -1;
+    size = 0;
+  }
+
+  // moves id up from position until its parent's key is no greater than its own
+  private void siftUp(int id, int position) {
+    double key = keys[id];
+    while (position > 0) {
+      int parent = (position - 1) / ARITY;
+      int parentId = heap[parent];
+      if (keys[parentId] <= key)
+        break;
+      heap[position] = parentId;
+      positions[parentId] = position;
+      position = parent;
+    }
+    heap[position] = id;
+    positions[id] = position;
+  }
+
+  // moves id down from position until none of its children has a smaller key
+  private void siftDown(int id, int position) {
+    double key = keys[id];
+    while (true) {
+      int firstChild = position * ARITY + 1;
+      if (firstChild >= size)
+        break;
+      int lastChild = Math.min(firstChild + ARITY, size);
+      int minChild = firstChild;
+      for (int child = firstChild + 1; child < lastChild; child++)
+        if (keys[heap[child]] < keys[heap[minChild]])
+          minChild = child;
+      int minId = heap[minChild];
+      if (keys[minId] >= key)
+        break;
+      heap[position] = minId;
+      positions[minId] = position;
+      position = minChild;
+    }
+    heap[position] = id;
+    positions[id] = position;
+  }
+}
@@ -0,0 +1,40 @@
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests for IndexedMinHeap.
+ */
+public class IndexedMinHeapTests {
+
+  @Test
+  public void testPollsInKeyOrder() {
+    IndexedMinHeap testHeap = new IndexedMinHeap(100);
+    for (int id = 0; id < 100; id++)
+      testHeap.insertOrDecrease(id, (id * 37) % 100);
+    double previous = -1;
+    while (!testHeap.isEmpty()) {
+      double key = testHeap.peekKey();
+      int id = testHeap.poll();
+      Assertions.assertEquals((id * 37) % 100, key);
+      Assertions.assertTrue(key >= previous);
+      Assertions.assertFalse(testHeap.contains(id));
+      previous = key;
+    }
+  }
+
+  @Test
+  public void testDecreaseKeyKeepsOneEntryPerId() {
+    IndexedMinHeap testHeap = new IndexedMinHeap(4);
+    testHeap.insertOrDecrease(0, 5.0);
+    testHeap.insertOrDecrease(1, 3.0);
+    testHeap.insertOrDecrease(2, 4.0);
+    Assertions.assertTrue(testHeap.insertOrDecrease(0, 1.0));
+    Assertions.assertFalse(testHeap.insertOrDecrease(2, 9.0));
+    Assertions.assertEquals(3, testHeap.size());
+    Assertions.assertEquals(0, testHeap.poll());
+    Assertions.assertEquals(1, testHeap.poll());
+    Assertions.assertEquals(2, testHeap.poll());
+    Assertions.assertThrows(NoSuchElementException.class, () -> testHeap.poll());
+  }
+}
@@ -0,0 +1,243 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Precomputed shortest path costs between a few landmark nodes and every other node of a
+ * CompressedGraph, used to find lower bounds on the cost of the shortest path between any two
+ * nodes through the triangle inequality. For a landmark L, the cost from v to t is at least
+ * cost(L,t)-cost(L,v) and at least cost(v,L)-cost(t,L). These bounds let an A* search head towards
+ * its target, even though the graph has no coordinates to estimate distances from.
+ *
+ * Landmarks are chosen with the farthest heuristic: each new landmark is the node that is farthest
+ * from the landmarks chosen so far. An index can be saved next to the graph it was built from and
+ * loaded again at startup, as long as that graph has not changed.
+ */
+public class LandmarkIndex {
+
+  // identifies files written by save ("LMK1")
+  private static final int MAGIC = 0x4C4D4B31;
+
+  protected final int nodeCount;
+  protected final long fingerprint; // of the graph this index was built from
+  protected final int[] landmarks;
+  protected final double[][] fromLandmark; // cost from each landmark to each node
+  protected final double[][] toLandmark; // cost from each node to each landmark
+
+  protected LandmarkIndex(int nodeCount, long fingerprint, int[] landmarks,
+      double[][] fromLandmark, double[][] toLandmark) {
+    this.nodeCount = nodeCount;
+    this.fingerprint = fingerprint;
+    this.landmarks = landmarks;
+    this.fromLandmark = fromLandmark;
+    this.toLandmark = toLandmark;
+  }
+
+  /**
+   * Selects up to count landmarks in the provided graph, and computes the cost of the shortest
+   * paths from and to each of them.
+   *
+   * @param graph the graph to build an index for
+   * @param count the number of landmarks to select
+   * @return the index for that graph
+   */
+  public static LandmarkIndex build(CompressedGraph<?> graph, int count) {
+    int nodeCount = graph.getNodeCount();
+    count = Math.min(count, nodeCount);
+    int[] landmarks = new int[count];
+    double[][] fromLandmark = new double[count][];
+    double[][] toLandmark = new double[count][];
+    // smallest cost (in either direction) between each node and the chosen landmarks
+    double[] nearest = new double[nodeCount];
+    Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+    // the first landmark is the node farthest from node 0, and each one after is the node
+    // farthest from all of the landmarks before it
+    double[] fromStart = count > 0 ? costsFrom(graph, 0, false) : null;
+    int next = count > 0 ? farthest(fromStart) : 0;
+    for (int i = 0; i < count; i++) {
+      landmarks[i] = next;
+      fromLandmark[i] = costsFrom(graph, next, false);
+      toLandmark[i] = costsFrom(graph, next, true);
+      for (int v = 0; v < nodeCount; v++)
+        nearest[v] = Math.min(nearest[v], Math.min(fromLandmark[i][v], toLandmark[i][v]));
+      next = farthest(nearest);
+    }
+    return new LandmarkIndex(nodeCount, graph.fingerprint(), landmarks, fromLandmark,
+        toLandmark);
+  }
+
+  // returns the node with the largest cost, where nodes that were not reached at all count as the
+  // farthest, so that every part of a disconnected graph is covered
+  private static int farthest(double[] costs) {
+    int best = 0;
+    for (int v = 1; v < costs.length; v++)
+      if (costs[v] > costs[best])
+        best = v;
+    return best;
+  }
+
+  /**
+   * Computes the cost of the shortest path from source to every node, or from every node to source
+   * when reverse is true, with Dijkstra's algorithm.
+   *
+   * @param graph   the graph to search
+   * @param source  the id of the node to search from
+   * @param reverse true to follow the edges entering each node instead of the edges leaving it
+   * @return the cost of each shortest path, or infinity for nodes with no such path
+   */
+  protected static double[] costsFrom(CompressedGraph<?> graph, int source, boolean reverse) {
+    int nodeCount = graph.getNodeCount();
+    double[] costs = new double[nodeCount];
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+    BitSet settled = new BitSet(nodeCount);
+    costs[source] = 0.0;
+    queue.insertOrDecrease(source, 0.0);
+    while (!queue.isEmpty()) {
+      int current = queue.poll();
+      settled.set(current);
+      int first = reverse ? graph.firstReverseEdge(current) : graph.firstEdge(current);
+      int last = reverse ? graph.firstReverseEdge(current + 1) : graph.firstEdge(current + 1);
+      for (int edge = first; edge < last; edge++) {
+        int next = reverse ? graph.source(edge) : graph.target(edge);
+        if (settled.get(next))
+          continue;
+        double weight = reverse ? graph.reverseWeight(edge) : graph.weight(edge);
+        double newCost = costs[current] + weight;
+        if (newCost < costs[next]) {
+          costs[next] = newCost;
+          queue.insertOrDecrease(next, newCost);
+        }
+      }
+    }
+    return costs;
+  }
+
+  /**
+   * Returns a lower bound on the cost of the shortest path from one node to another.
+   *
+   * @param from the id of the first node of the path
+   * @param to   the id of the last node of the path
+   * @return a cost that is never greater than the cost of the shortest path from from to to
+   */
+  public double lowerBound(int from, int to) {
+    double bound = 0.0;
+    for (int i = 0; i < landmarks.length; i++) {
+      // bounds that involve a cost of infinity tell us nothing
+      double[] costs = fromLandmark[i];
+      if (costs[to] != Double.POSITIVE_INFINITY && costs[from] != Double.POSITIVE_INFINITY)
+        bound = Math.max(bound, costs[to] - costs[from]);
+      costs = toLandmark[i];
+      if (costs[from] != Double.POSITIVE_INFINITY && costs[to] != Double.POSITIVE_INFINITY)
+        bound = Math.max(bound, costs[from] - costs[to]);
+    }
+    return bound;
+  }
+
+  /**
+   * @return the ids of the landmark nodes
+   */
+  public int[] getLandmarks() {
+    return landmarks.clone();
+  }
+
+  /**
+   * @param graph a compressed graph
+   * @return true if this index was built from a graph with the same nodes and edges
+   */
+  public boolean isFor(CompressedGraph<?> graph) {
+    return graph.getNodeCount() == nodeCount && graph.fingerprint() == fingerprint;
+  }
+
+  /**
+   * Writes this index to a file.
+   *
+   * @param file the path of the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(nodeCount);
+      out.writeLong(fingerprint);
+      out.writeInt(landmarks.length);
+      for (int landmark : landmarks)
+        out.writeInt(landmark);
+      for (int i = 0; i < landmarks.length; i++) {
+        for (double cost : fromLandmark[i])
+          out.writeDouble(cost);
+        for (double cost : toLandmark[i])
+          out.writeDouble(cost);
+      }
+    }
+  }
+
+  /**
+   * Reads an index that was written by save.
+   *
+   * @param file the path of the file to read
+   * @return the index stored in that file
+   * @throws IOException if the file cannot be read, or does not contain an index
+   */
+  public static LandmarkIndex load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 20 || buffer.getInt() != MAGIC)
+        throw new IOException("Not a landmark index: " + file);
+      int nodeCount = buffer.getInt();
+      long fingerprint = buffer.getLong();
+      int count = buffer.getInt();
+      if (buffer.remaining() != count * 4L + count * 2L * nodeCount * 8L)
+        throw new IOException("Truncated landmark index: " + file);
+      int[] landmarks = new int[count];
+      buffer.asIntBuffer().get(landmarks);
+      buffer.position(buffer.position() + count * 4);
+      double[][] fromLandmark = new double[count][nodeCount];
+      double[][] toLandmark = new double[count][nodeCount];
+      for (int i = 0; i < count; i++) {
+        buffer.asDoubleBuffer().get(fromLandmark[i]);
+        buffer.position(buffer.position() + nodeCount * 8);
+        buffer.asDoubleBuffer().get(toLandmark[i]);
+        buffer.position(buffer.position() + nodeCount * 8);
+      }
+      return new LandmarkIndex(nodeCount, fingerprint, landmarks, fromLandmark, toLandmark);
+    }
+  }
+
+  /**
+   * Loads the index saved in a file when it was built from the provided graph, or otherwise
+   * builds a new index and tries to save it to that file for next time.
+   *
+   * @param graph the graph the index is for
+   * @param file  the path of the file the index is saved in
+   * @param count the number of landmarks to select when a new index is built
+   * @return an index for graph
+   */
+  public static LandmarkIndex loadOrBuild(CompressedGraph<?> graph, Path file, int count) {
+    try {
+      if (Files.exists(file)) {
+        LandmarkIndex saved = load(file);
+        if (saved.isFor(graph))
+          return saved;
+      }
+    } catch (IOException e) {
+      // an unreadable file is replaced below
+    }
+    LandmarkIndex index = build(graph, count);
+    try {
+      index.save(file);
+    } catch (IOException e) {
+      System.out.println("Unable to save landmark index to " + file + ": " + e.getMessage());
+    }
+    return index;
+  }
+}
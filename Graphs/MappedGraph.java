@@ -0,0 +1,361 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A CompressedGraph whose nodes and edges stay in a binary file that is memory mapped, instead of
+ * being read into arrays. Opening one only checks the file's header, and searches then read edges
+ * straight from the mapped pages, which the operating system loads when they are first touched and
+ * shares between every process that maps the same file.
+ *
+ * A graph file holds, after a 32 byte header (magic number, flags, node count, edge count,
+ * fingerprint, size of the name table):
+ *
+ * <ul>
+ * <li>the node names as UTF-8 bytes, preceded by the offset at which each one starts</li>
+ * <li>the compressed sparse row offsets, targets and weights of the edges leaving each node</li>
+ * <li>optionally, the same for the edges entering each node; when these are left out they are
+ * computed from the leaving edges as the file is opened</li>
+ * </ul>
+ *
+ * Every section starts at a multiple of 8 bytes, and numbers are stored big-endian, as by
+ * DataOutputStream. The fingerprint is that of the graph the file was written from, so indexes
+ * saved for that graph (such as a LandmarkIndex) can be used with the mapped one.
+ */
+public class MappedGraph extends CompressedGraph<String> {
+
+  // identifies files written by write ("GRF1")
+  private static final int MAGIC = 0x47524631;
+  private static final int HEADER_BYTES = 32;
+  // set in the flags of files that hold the edges entering each node
+  private static final int HAS_REVERSE = 1;
+
+  protected final int nodeCount;
+  protected final int edgeCount;
+  protected final long fingerprint;
+
+  protected final IntBuffer nameOffsets;
+  protected final ByteBuffer names;
+  protected final IntBuffer offsets;
+  protected final IntBuffer targets;
+  protected final DoubleBuffer weights;
+  protected final IntBuffer reverseOffsets;
+  protected final IntBuffer sources;
+  protected final DoubleBuffer reverseWeights;
+
+  // names decoded so far, and a symbol table over the name bytes once a name is first looked up
+  private final String[] decoded;
+  private volatile SymbolTable symbols = null;
+
+  protected MappedGraph(int nodeCount, int edgeCount, long fingerprint, IntBuffer nameOffsets,
+      ByteBuffer names, IntBuffer offsets, IntBuffer targets, DoubleBuffer weights,
+      IntBuffer reverseOffsets, IntBuffer sources, DoubleBuffer reverseWeights) {
+    this.nodeCount = nodeCount;
+    this.edgeCount = edgeCount;
+    this.fingerprint = fingerprint;
+    this.nameOffsets = nameOffsets;
+    this.names = names;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+    this.reverseOffsets = reverseOffsets;
+    this.sources = sources;
+    this.reverseWeights = reverseWeights;
+    this.decoded = new String[nodeCount];
+  }
+
+  /**
+   * Writes a graph to a file, along with the edges entering each node.
+   *
+   * @param graph the graph to write
+   * @param file  the path of the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(CompressedGraph<String> graph, Path file) throws IOException {
+    write(graph, file, true);
+  }
+
+  /**
+   * Writes a snapshot of the current contents of a graph to a file, along with the edges entering
+   * each node.
+   *
+   * @param graph the graph to write
+   * @param file  the path of the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(BaseGraph<String, ?> graph, Path file) throws IOException {
+    write(graph.freeze(), file, true);
+  }
+
+  /**
+   * Writes a graph to a file.
+   *
+   * @param graph          the graph to write
+   * @param file           the path of the file to write
+   * @param includeReverse whether to write the edges entering each node, which otherwise have to
+   *                       be computed each time the file is opened
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(CompressedGraph<String> graph, Path file, boolean includeReverse)
+      throws IOException {
+    int nodeCount = graph.getNodeCount();
+    int edgeCount = graph.getEdgeCount();
+    byte[][] nameBytes = new byte[nodeCount][];
+    long nameTableSize = 0;
+    for (int id = 0; id < nodeCount; id++) {
+      nameBytes[id] = graph.dataOf(id).getBytes(StandardCharsets.UTF_8);
+      nameTableSize += nameBytes[id].length;
+    }
+    if (nameTableSize > Integer.MAX_VALUE)
+      throw new IOException("Node names too long for a graph file: " + nameTableSize + " bytes");
+
+    // write a temporary file next to the real one and then move it into place, so that other
+    // processes opening the file never see it partly written
+    Path temporary = file.resolveSibling(
+        file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(includeReverse ? HAS_REVERSE : 0);
+      out.writeInt(nodeCount);
+      out.writeInt(edgeCount);
+      out.writeLong(graph.fingerprint());
+      out.writeInt((int) nameTableSize);
+      out.writeInt(0);
+
+      int nameOffset = 0;
+      out.writeInt(0);
+      for (byte[] name : nameBytes)
+        out.writeInt(nameOffset += name.length);
+      for (byte[] name : nameBytes)
+        out.write(name);
+      long namesEnd = HEADER_BYTES + (nodeCount + 1L) * 4 + nameTableSize;
+      pad(out, namesEnd);
+
+      for (int id = 0; id <= nodeCount; id++)
+        out.writeInt(graph.firstEdge(id));
+      for (int edge = 0; edge < edgeCount; edge++)
+        out.writeInt(graph.target(edge));
+      long targetsEnd = padded(namesEnd) + (nodeCount + 1L) * 4 + edgeCount * 4L;
+      pad(out, targetsEnd);
+      for (int edge = 0; edge < edgeCount; edge++)
+        out.writeDouble(graph.weight(edge));
+
+      if (includeReverse) {
+        for (int id = 0; id <= nodeCount; id++)
+          out.writeInt(graph.firstReverseEdge(id));
+        for (int edge = 0; edge < edgeCount; edge++)
+          out.writeInt(graph.source(edge));
+        pad(out, padded(targetsEnd) + edgeCount * 8L + (nodeCount + 1L) * 4 + edgeCount * 4L);
+        for (int edge = 0; edge < edgeCount; edge++)
+          out.writeDouble(graph.reverseWeight(edge));
+      }
+    } catch (IOException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // writes zeros from position up to the next multiple of 8 bytes
+  private static void pad(DataOutputStream out, long position) throws IOException {
+    for (long i = position; i < padded(position); i++)
+      out.writeByte(0);
+  }
+
+  private static long padded(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  /**
+   * @param file the path of a file
+   * @return true if that file starts like a file written by write
+   */
+  public static boolean isGraphFile(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(4);
+      return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Maps a file that was written by write. The file stays mapped (and should not be changed)
+   * until the graph is no longer used, even though its channel is closed.
+   *
+   * @param file the path of the file to open
+   * @return the graph stored in that file
+   * @throws IOException if the file cannot be read, or does not contain a graph
+   */
+  public static MappedGraph open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES)
+        throw new IOException("Not a graph file: " + file);
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      if (header.getInt() != MAGIC)
+        throw new IOException("Not a graph file: " + file);
+      int flags = header.getInt();
+      int nodeCount = header.getInt();
+      int edgeCount = header.getInt();
+      long fingerprint = header.getLong();
+      int nameTableSize = header.getInt();
+
+      long namesAt = HEADER_BYTES + (nodeCount + 1L) * 4;
+      long offsetsAt = padded(namesAt + nameTableSize);
+      long weightsAt = padded(offsetsAt + (nodeCount + 1L) * 4 + edgeCount * 4L);
+      long reverseAt = weightsAt + edgeCount * 8L;
+      long reverseWeightsAt = padded(reverseAt + (nodeCount + 1L) * 4 + edgeCount * 4L);
+      long end = (flags & HAS_REVERSE) != 0 ? reverseWeightsAt + edgeCount * 8L : reverseAt;
+      if (channel.size() != end)
+        throw new IOException("Truncated graph file: " + file);
+
+      IntBuffer nameOffsets = map(channel, HEADER_BYTES, (nodeCount + 1L) * 4).asIntBuffer();
+      ByteBuffer names = map(channel, namesAt, nameTableSize);
+      IntBuffer offsets = map(channel, offsetsAt, (nodeCount + 1L) * 4).asIntBuffer();
+      IntBuffer targets = map(channel, offsetsAt + (nodeCount + 1L) * 4, edgeCount * 4L)
+          .asIntBuffer();
+      DoubleBuffer weights = map(channel, weightsAt, edgeCount * 8L).asDoubleBuffer();
+      if ((flags & HAS_REVERSE) == 0)
+        return withReverse(nodeCount, edgeCount, fingerprint, nameOffsets, names, offsets,
+            targets, weights);
+      return new MappedGraph(nodeCount, edgeCount, fingerprint, nameOffsets, names, offsets,
+          targets, weights,
+          map(channel, reverseAt, (nodeCount + 1L) * 4).asIntBuffer(),
+          map(channel, reverseAt + (nodeCount + 1L) * 4, edgeCount * 4L).asIntBuffer(),
+          map(channel, reverseWeightsAt, edgeCount * 8L).asDoubleBuffer());
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long length)
+      throws IOException {
+    if (length > Integer.MAX_VALUE)
+      throw new IOException("Graph file section too large to map: " + length + " bytes");
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+  }
+
+  // computes the edges entering each node from the edges leaving them, for files without them
+  private static MappedGraph withReverse(int nodeCount, int edgeCount, long fingerprint,
+      IntBuffer nameOffsets, ByteBuffer names, IntBuffer offsets, IntBuffer targets,
+      DoubleBuffer weights) {
+    int[] reverseOffsets = new int[nodeCount + 1];
+    for (int edge = 0; edge < edgeCount; edge++)
+      reverseOffsets[targets.get(edge) + 1]++;
+    for (int id = 0; id < nodeCount; id++)
+      reverseOffsets[id + 1] += reverseOffsets[id];
+    int[] next = Arrays.copyOf(reverseOffsets, nodeCount);
+    int[] sources = new int[edgeCount];
+    double[] reverseWeights = new double[edgeCount];
+    for (int id = 0; id < nodeCount; id++) {
+      for (int edge = offsets.get(id); edge < offsets.get(id + 1); edge++) {
+        int slot = next[targets.get(edge)]++;
+        sources[slot] = id;
+        reverseWeights[slot] = weights.get(edge);
+      }
+    }
+    return new MappedGraph(nodeCount, edgeCount, fingerprint, nameOffsets, names, offsets,
+        targets, weights, IntBuffer.wrap(reverseOffsets), IntBuffer.wrap(sources),
+        DoubleBuffer.wrap(reverseWeights));
+  }
+
+  /**
+   * Returns the id of the node with the provided name. The first call builds a symbol table over
+   * the name bytes in the file, which later calls look names up in without decoding any names.
+   *
+   * @param nodeData the name of the node to look up
+   * @return the id of that node, or -1 if no node in this graph has that name
+   */
+  @Override
+  public int idOf(String nodeData) {
+    SymbolTable current = symbols;
+    if (current == null) {
+      current = new SymbolTable(names, nameOffsets, nodeCount);
+      symbols = current;
+    }
+    return current.idOf(nodeData);
+  }
+
+  /**
+   * Returns the name of the node with the provided id, decoding it from the file the first time
+   * it is requested.
+   *
+   * @param id the id of the node
+   * @return the name of that node
+   */
+  @Override
+  public String dataOf(int id) {
+    String name = decoded[id];
+    if (name == null) {
+      int offset = nameOffsets.get(id);
+      byte[] bytes = new byte[nameOffsets.get(id + 1) - offset];
+      names.get(offset, bytes);
+      name = new String(bytes, StandardCharsets.UTF_8);
+      decoded[id] = name;
+    }
+    return name;
+  }
+
+  @Override
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  @Override
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public int firstEdge(int id) {
+    return offsets.get(id);
+  }
+
+  @Override
+  public int target(int edge) {
+    return targets.get(edge);
+  }
+
+  @Override
+  public double weight(int edge) {
+    return weights.get(edge);
+  }
+
+  @Override
+  public double weightBetween(int pred, int succ) {
+    for (int edge = offsets.get(pred); edge < offsets.get(pred + 1); edge++)
+      if (targets.get(edge) == succ)
+        return weights.get(edge);
+    return Double.POSITIVE_INFINITY;
+  }
+
+  @Override
+  public int firstReverseEdge(int id) {
+    return reverseOffsets.get(id);
+  }
+
+  @Override
+  public int source(int edge) {
+    return sources.get(edge);
+  }
+
+  @Override
+  public double reverseWeight(int edge) {
+    return reverseWeights.get(edge);
+  }
+}
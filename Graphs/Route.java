@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a single shortest path query: the data of the nodes along the path, the weight of
+ * each edge (or leg) between consecutive nodes, and the total cost of the path. When no path
+ * exists between the requested nodes, the query returns the route from none() instead of throwing,
+ * which has no nodes or legs and reports isFound() as false.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class Route<NodeType> {
+
+  // shared by every query that finds no path
+  private static final Route<Object> NONE =
+      new Route<>(Collections.emptyList(), new double[0], Double.POSITIVE_INFINITY);
+
+  protected final List<NodeType> nodes;
+  protected final double[] legCosts;
+  protected final double totalCost;
+
+  /**
+   * Creates a route through the provided nodes.
+   *
+   * @param nodes     the data of the nodes along the path, from start to end
+   * @param legCosts  the weight of the edge leaving each node except the last, which is kept and
+   *                  must not be modified afterwards
+   * @param totalCost the cost of the whole path
+   */
+  public Route(List<NodeType> nodes, double[] legCosts, double totalCost) {
+    this.nodes = Collections.unmodifiableList(nodes);
+    this.legCosts = legCosts;
+    this.totalCost = totalCost;
+  }
+
+  /**
+   * @return the route returned by queries that find no path
+   */
+  @SuppressWarnings("unchecked")
+  public static <NodeType> Route<NodeType> none() {
+    return (Route<NodeType>) NONE;
+  }
+
+  /**
+   * @return true if a path was found, or false if this route is none()
+   */
+  public boolean isFound() {
+    return this != NONE;
+  }
+
+  /**
+   * @return the data of the nodes along the path, or an empty list when no path was found
+   */
+  public List<NodeType> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * @return the number of legs (edges) along the path
+   */
+  public int getLegCount() {
+    return legCosts.length;
+  }
+
+  /**
+   * @param leg the index of a leg, where leg i connects nodes i and i+1
+   * @return the weight of that leg
+   */
+  public double getLegCost(int leg) {
+    return legCosts[leg];
+  }
+
+  /**
+   * @return the weight of each leg along the path, or an empty list when no path was found
+   */
+  public List<Double> getLegCosts() {
+    List<Double> costs = new ArrayList<>(legCosts.length);
+    for (double cost : legCosts)
+      costs.add(cost);
+    return costs;
+  }
+
+  /**
+   * @return the cost of the whole path, or infinity when no path was found
+   */
+  public double getTotalCost() {
+    return totalCost;
+  }
+}
@@ -0,0 +1,190 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of shortest paths between pairs of node ids, which evicts the least recently
+ * used paths first. Each path is stored as an array of node ids, and weighs one unit per node plus
+ * ENTRY_WEIGHT units for the entry itself, so that the cache holds fewer long paths than short
+ * ones. Pairs with no path between them are cached too.
+ *
+ * Cached paths belong to one version of the graph they were found in. Looking up or adding a path
+ * for a newer version first empties the cache, since node ids and paths may both have changed,
+ * while a lookup for an older version (by a query that started before the change) misses without
+ * touching the cache. All methods are synchronized, so one cache can be shared by the threads
+ * querying a graph.
+ */
+public class RouteCache {
+
+  // weight of each entry beyond the nodes of its path
+  protected static final int ENTRY_WEIGHT = 8;
+
+  /**
+   * A path between two nodes and its cost, as found by a search and kept by the cache.
+   */
+  public static class Entry {
+    public final int[] path; // ids of the nodes along the path, or null when there is none
+    public final double cost; // cost of the path, or infinity when there is none
+
+    public Entry(int[] path, double cost) {
+      this.path = path;
+      this.cost = cost;
+    }
+  }
+
+  // the entry for pairs of nodes with no path between them
+  public static final Entry NO_PATH = new Entry(null, Double.POSITIVE_INFINITY);
+
+  // entries by source and target id, from least to most recently used
+  protected final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  protected long version = 0;
+  protected int maxWeight;
+  protected long weight = 0;
+
+  protected long hits = 0;
+  protected long misses = 0;
+  protected long evictions = 0;
+  protected long invalidations = 0;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxWeight the most weight the cache holds at once, or 0 to cache nothing
+   */
+  public RouteCache(int maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Looks up the path between two nodes.
+   *
+   * @param version the current version of the graph
+   * @param source  the id of the first node of the path
+   * @param target  the id of the last node of the path
+   * @return the cached entry for that pair, or null when none is cached for this version
+   */
+  public synchronized Entry get(long version, int source, int target) {
+    if (maxWeight == 0)
+      return null;
+    Entry entry = checkVersion(version) ? entries.get(key(source, target)) : null;
+    if (entry == null)
+      misses++;
+    else
+      hits++;
+    return entry;
+  }
+
+  /**
+   * Adds the path between two nodes to the cache, evicting the least recently used paths while
+   * the cache weighs too much.
+   *
+   * @param version the version of the graph that the path was found in
+   * @param source  the id of the first node of the path
+   * @param target  the id of the last node of the path
+   * @param path    the ids of the nodes along the path, which must not be modified afterwards, or
+   *                null when there is no path
+   * @param cost    the cost of the path
+   */
+  public synchronized void put(long version, int source, int target, int[] path, double cost) {
+    if (version < this.version)
+      return; // found in a graph that has changed since
+    checkVersion(version);
+    int entryWeight = weightOf(path);
+    if (entryWeight > maxWeight)
+      return;
+    Entry previous = entries.put(key(source, target), new Entry(path, cost));
+    if (previous != null)
+      weight -= weightOf(previous.path);
+    weight += entryWeight;
+    evict();
+  }
+
+  /**
+   * Changes the most weight this cache holds, evicting entries when it now holds too much.
+   *
+   * @param maxWeight the most weight the cache holds at once, or 0 to cache nothing
+   */
+  public synchronized void setMaxWeight(int maxWeight) {
+    this.maxWeight = maxWeight;
+    evict();
+  }
+
+  /**
+   * Removes every entry from this cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * @return the number of pairs cached
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the total weight of the cached entries
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  /**
+   * @return the number of lookups that found a cached entry
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that found no cached entry
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * @return the number of entries evicted to make room for others
+   */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of times the cache was emptied because the graph changed
+   */
+  public synchronized long getInvalidationCount() {
+    return invalidations;
+  }
+
+  // empties the cache when the graph has changed since its entries were found, and returns
+  // whether they can be used for the provided version, which is false when it is older
+  private boolean checkVersion(long version) {
+    if (version > this.version) {
+      if (!entries.isEmpty())
+        invalidations++;
+      clear();
+      this.version = version;
+    }
+    return version == this.version;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+    while (weight > maxWeight && eldest.hasNext()) {
+      weight -= weightOf(eldest.next().getValue().path);
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  private static int weightOf(int[] path) {
+    return ENTRY_WEIGHT + (path == null ? 0 : path.length);
+  }
+
+  private static Long key(int source, int target) {
+    return ((long) source << 32) | (target & 0xffffffffL);
+  }
+}
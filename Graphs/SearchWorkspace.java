@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * The state of one shortest path search over the dense node ids of a CompressedGraph: the cost of
+ * the cheapest path found to each node, the node before it on that path, which nodes have been
+ * settled, and the queue of nodes still to settle. A workspace is meant to be kept by one thread
+ * and reused by every search it runs, so that searches do not allocate this state each time.
+ *
+ * Instead of clearing its arrays before each search, a workspace stamps every entry it writes with
+ * the number (generation) of the current search, and treats entries with an older stamp as unset.
+ * Starting a new search then only takes time proportional to the nodes left in the queue.
+ */
+public class SearchWorkspace {
+
+  protected double[] costs;
+  protected int[] predecessors;
+  // the generation in which each node was last reached, and last settled
+  protected int[] reachedStamps;
+  protected int[] settledStamps;
+  protected int generation = 0;
+  protected IndexedMinHeap queue;
+
+  /**
+   * Creates a workspace for searches over graphs with up to capacity nodes.
+   *
+   * @param capacity the number of nodes to allocate state for
+   */
+  public SearchWorkspace(int capacity) {
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    costs = new double[capacity];
+    predecessors = new int[capacity];
+    reachedStamps = new int[capacity];
+    settledStamps = new int[capacity];
+    queue = new IndexedMinHeap(capacity);
+    generation = 0;
+  }
+
+  /**
+   * Forgets the previous search and prepares for a new one, growing this workspace first if it
+   * has room for fewer than nodeCount nodes.
+   *
+   * @param nodeCount the number of nodes in the graph that the next search runs over
+   */
+  public void reset(int nodeCount) {
+    if (nodeCount > costs.length)
+      allocate(Math.max(nodeCount, costs.length * 2));
+    queue.clear();
+    if (++generation == Integer.MAX_VALUE) {
+      // stamps from long ago could be mistaken for the current generation after it wraps around
+      Arrays.fill(reachedStamps, 0);
+      Arrays.fill(settledStamps, 0);
+      generation = 1;
+    }
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the cost of the cheapest path found to that node by this search, or infinity when it
+   *         has not been reached
+   */
+  public double cost(int id) {
+    return reachedStamps[id] == generation ? costs[id] : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the id of the node before it on the cheapest path found to it, or -1 when it has not
+   *         been reached or starts the search
+   */
+  public int predecessor(int id) {
+    return reachedStamps[id] == generation ? predecessors[id] : -1;
+  }
+
+  /**
+   * Records a cheaper path to a node.
+   *
+   * @param id          the id of the node
+   * @param cost        the cost of the path
+   * @param predecessor the id of the node before it on the path, or -1 when it starts the search
+   */
+  public void reach(int id, double cost, int predecessor) {
+    costs[id] = cost;
+    predecessors[id] = predecessor;
+    reachedStamps[id] = generation;
+  }
+
+  /**
+   * @param id the id of a node
+   * @return true when that node has been settled by this search
+   */
+  public boolean isSettled(int id) {
+    return settledStamps[id] == generation;
+  }
+
+  /**
+   * Marks a node as settled, once the cheapest path to it is known.
+   *
+   * @param id the id of the node
+   */
+  public void settle(int id) {
+    settledStamps[id] = generation;
+  }
+
+  /**
+   * @return the queue of nodes reached but not yet settled by this search
+   */
+  public IndexedMinHeap queue() {
+    return queue;
+  }
+}
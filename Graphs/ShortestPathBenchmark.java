@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Reports how much work shortest path queries do on campus.dot and on larger synthetic campuses.
+ * Run with: java ShortestPathBenchmark [campus.dot]
+ */
+public class ShortestPathBenchmark {
+
+  private static final int QUERIES = 200;
+
+  public static void main(String[] args) throws IOException {
+    DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+    new Backend(campus).loadGraphData(args.length > 0 ? args[0] : "campus.dot");
+    report("campus.dot", campus);
+    for (int side : new int[] {50, 200, 500})
+      report("synthetic " + side + "x" + side, syntheticCampus(side, new Random(side)));
+  }
+
+  /**
+   * Builds a square grid of side*side locations, with edges in both directions between
+   * neighboring locations, random walking times, and a few longer random paths between distant
+   * locations.
+   *
+   * @param side   the number of locations along each side of the grid
+   * @param random the source of edge weights and extra paths
+   * @return the generated graph
+   */
+  public static DijkstraGraph<String, Double> syntheticCampus(int side, Random random) {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    for (int i = 0; i < side * side; i++)
+      graph.insertNode("L" + i);
+    for (int row = 0; row < side; row++) {
+      for (int col = 0; col < side; col++) {
+        int id = row * side + col;
+        if (col + 1 < side)
+          insertBothWays(graph, id, id + 1, 30 + random.nextInt(170));
+        if (row + 1 < side)
+          insertBothWays(graph, id, id + side, 30 + random.nextInt(170));
+      }
+    }
+    for (int i = 0; i < side * side / 20; i++) {
+      int from = random.nextInt(side * side);
+      int to = random.nextInt(side * side);
+      if (from != to)
+        insertBothWays(graph, from, to, 200 * side);
+    }
+    return graph;
+  }
+
+  private static void insertBothWays(DijkstraGraph<String, Double> graph, int a, int b,
+      double seconds) {
+    graph.insertEdge("L" + a, "L" + b, seconds);
+    graph.insertEdge("L" + b, "L" + a, seconds);
+  }
+
+  // runs the same random queries through each search strategy and prints the work they did
+  private static void report(String name, DijkstraGraph<String, Double> graph) {
+    CompressedGraph<String> compressed = graph.snapshot();
+    int n = compressed.getNodeCount();
+    Random random = new Random(42);
+    int[][] queries = new int[QUERIES][];
+    for (int i = 0; i < QUERIES; i++)
+      queries[i] = new int[] {random.nextInt(n), random.nextInt(n)};
+
+    long[] lazy = new long[2];
+    long[] indexed = new long[2];
+    for (int[] query : queries) {
+      lazySearch(compressed, query[0], query[1], lazy);
+      indexedSearch(compressed, query[0], query[1], indexed);
+    }
+
+    System.out.println(name + " (" + n + " nodes, " + compressed.getEdgeCount() + " edges)");
+    System.out.printf("  lazy PriorityQueue: %10.1f pushed %10.1f expanded per query%n",
+        lazy[0] / (double) QUERIES, lazy[1] / (double) QUERIES);
+    System.out.printf("  indexed 4-ary heap: %10.1f pushed %10.1f settled  per query%n",
+        indexed[0] / (double) QUERIES, indexed[1] / (double) QUERIES);
+
+    long startTime;
+    if (n <= DijkstraGraph.DEFAULT_ALL_PAIRS_LIMIT) {
+      startTime = System.nanoTime();
+      graph.shortestRoute(compressed.dataOf(0), compressed.dataOf(0));
+      System.out.println("  all pairs tables built in "
+          + (System.nanoTime() - startTime) / 1000000 + " ms");
+      startTime = System.nanoTime();
+      for (int[] query : queries)
+        graph.shortestRoute(compressed.dataOf(query[0]), compressed.dataOf(query[1]));
+      System.out.printf("  TABLES        %10s lookups only,     %8d us per query%n", "",
+          (System.nanoTime() - startTime) / 1000 / QUERIES);
+    }
+    // the query modes below only search graphs too large for distance tables
+    graph.setAllPairsLimit(0);
+
+    startTime = System.nanoTime();
+    graph.setLandmarks(LandmarkIndex.build(compressed, 8));
+    System.out.println("  8 landmarks built in " + (System.nanoTime() - startTime) / 1000000
+        + " ms");
+    startTime = System.nanoTime();
+    ContractionHierarchy hierarchy = ContractionHierarchy.build(compressed);
+    graph.setContractionHierarchy(hierarchy);
+    System.out.println("  contraction hierarchy built in "
+        + (System.nanoTime() - startTime) / 1000000 + " ms, with "
+        + hierarchy.getShortcutCount() + " shortcuts and " + hierarchy.getCoreSize()
+        + " nodes in its core");
+    for (DijkstraGraph.QueryMode mode : DijkstraGraph.QueryMode.values()) {
+      graph.setQueryMode(mode);
+      long settledBefore = graph.getSettledCount();
+      startTime = System.nanoTime();
+      for (int[] query : queries)
+        graph.shortestRoute(compressed.dataOf(query[0]), compressed.dataOf(query[1]));
+      long micros = (System.nanoTime() - startTime) / 1000 / QUERIES;
+      System.out.printf("  %-13s %10.1f settled per query, %8d us per query%n", mode,
+          (graph.getSettledCount() - settledBefore) / (double) QUERIES, micros);
+    }
+    graph.setQueryMode(DijkstraGraph.QueryMode.DIJKSTRA);
+    graph.setAllPairsLimit(DijkstraGraph.DEFAULT_ALL_PAIRS_LIMIT);
+  }
+
+  // the original search: duplicate queue entries, and no record of settled nodes
+  private static void lazySearch(CompressedGraph<String> graph, int source, int target,
+      long[] counts) {
+    double[] costs = new double[graph.getNodeCount()];
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[1], b[1]));
+    costs[source] = 0.0;
+    queue.add(new double[] {source, 0.0});
+    counts[0]++;
+    while (!queue.isEmpty()) {
+      double[] entry = queue.poll();
+      int current = (int) entry[0];
+      counts[1]++;
+      if (current == target)
+        return;
+      for (int edge = graph.firstEdge(current); edge < graph.firstEdge(current + 1); edge++) {
+        int succ = graph.target(edge);
+        double newCost = entry[1] + graph.weight(edge);
+        if (newCost < costs[succ]) {
+          costs[succ] = newCost;
+          queue.add(new double[] {succ, newCost});
+          counts[0]++;
+        }
+      }
+    }
+  }
+
+  // the current search: one heap entry per node, and each node settled once
+  private static void indexedSearch(CompressedGraph<String> graph, int source, int target,
+      long[] counts) {
+    double[] costs = new double[graph.getNodeCount()];
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    boolean[] settled = new boolean[graph.getNodeCount()];
+    IndexedMinHeap queue = new IndexedMinHeap(graph.getNodeCount());
+    costs[source] = 0.0;
+    queue.insertOrDecrease(source, 0.0);
+    counts[0]++;
+    while (!queue.isEmpty()) {
+      int current = queue.poll();
+      settled[current] = true;
+      counts[1]++;
+      if (current == target)
+        return;
+      for (int edge = graph.firstEdge(current); edge < graph.firstEdge(current + 1); edge++) {
+        int succ = graph.target(edge);
+        double newCost = costs[current] + graph.weight(edge);
+        if (!settled[succ] && newCost < costs[succ]) {
+          if (costs[succ] == Double.POSITIVE_INFINITY)
+            counts[0]++;
+          costs[succ] = newCost;
+          queue.insertOrDecrease(succ, newCost);
+        }
+      }
+    }
+  }
+}
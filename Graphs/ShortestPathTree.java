@@ -0,0 +1,138 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The result of a single source shortest path search: the nodes reached from a source node, in
+ * order of increasing cost, along with the cost of the shortest path to each of them and the node
+ * before it on that path. The source itself is always the first node, with a cost of 0.0 and no
+ * predecessor.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class ShortestPathTree<NodeType> {
+
+  // data, predecessor data and path cost of each reached node, in the order they were added
+  protected Object[] nodes;
+  protected Object[] predecessors;
+  protected double[] costs;
+  protected int size = 0;
+  // position of each reached node within the arrays above
+  protected MapADT<NodeType, Integer> positions;
+
+  /**
+   * Creates a tree containing only its source node.
+   *
+   * @param source       the data of the node that every path starts from
+   * @param expectedSize the number of nodes this tree is expected to hold
+   */
+  public ShortestPathTree(NodeType source, int expectedSize) {
+    int capacity = Math.max(1, expectedSize);
+    nodes = new Object[capacity];
+    predecessors = new Object[capacity];
+    costs = new double[capacity];
+    positions = ProbingHashtableMap.withCapacity(capacity * 2);
+    add(source, null, 0.0);
+  }
+
+  /**
+   * Adds a reached node to this tree. Nodes must be added in order of non-decreasing cost, and
+   * after their predecessor.
+   *
+   * @param node        the data of the reached node
+   * @param predecessor the data of the node before it on its shortest path
+   * @param cost        the cost of the shortest path from the source to node
+   */
+  public void add(NodeType node, NodeType predecessor, double cost) {
+    if (size == nodes.length) {
+      nodes = Arrays.copyOf(nodes, size * 2);
+      predecessors = Arrays.copyOf(predecessors, size * 2);
+      costs = Arrays.copyOf(costs, size * 2);
+    }
+    positions.put(node, size);
+    nodes[size] = node;
+    predecessors[size] = predecessor;
+    costs[size++] = cost;
+  }
+
+  /**
+   * @return the data of the node that every path in this tree starts from
+   */
+  public NodeType getSource() {
+    return getNodeAt(0);
+  }
+
+  /**
+   * @return the number of nodes in this tree, including its source
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param rank the position of a node in order of cost, where 0 is the source
+   * @return the data of that node
+   */
+  @SuppressWarnings("unchecked")
+  public NodeType getNodeAt(int rank) {
+    if (rank < 0 || rank >= size)
+      throw new IndexOutOfBoundsException("No node of rank " + rank);
+    return (NodeType) nodes[rank];
+  }
+
+  /**
+   * @param rank the position of a node in order of cost, where 0 is the source
+   * @return the cost of the shortest path to that node
+   */
+  public double getCostAt(int rank) {
+    if (rank < 0 || rank >= size)
+      throw new IndexOutOfBoundsException("No node of rank " + rank);
+    return costs[rank];
+  }
+
+  /**
+   * @param node the data of a node
+   * @return true if node was reached by the search that built this tree
+   */
+  public boolean contains(NodeType node) {
+    return node != null && positions.containsKey(node);
+  }
+
+  /**
+   * @param node the data of a reached node
+   * @return the cost of the shortest path from the source to node
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public double getCost(NodeType node) {
+    return costs[positionOf(node)];
+  }
+
+  /**
+   * @param node the data of a reached node
+   * @return the data of the node before it on its shortest path, or null for the source
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  @SuppressWarnings("unchecked")
+  public NodeType getPredecessor(NodeType node) {
+    return (NodeType) predecessors[positionOf(node)];
+  }
+
+  /**
+   * @param node the data of a reached node
+   * @return the data of the nodes along the shortest path from the source to node
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public List<NodeType> getPathTo(NodeType node) {
+    LinkedList<NodeType> path = new LinkedList<>();
+    for (NodeType current = node; current != null; current = getPredecessor(current))
+      path.addFirst(current);
+    return path;
+  }
+
+  private int positionOf(NodeType node) {
+    if (!contains(node))
+      throw new NoSuchElementException(node + " was not reached from " + getSource());
+    return positions.get(node);
+  }
+}
@@ -0,0 +1,257 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps the names of a fixed set of nodes to their dense int ids with a minimal perfect hash
+ * function: a hash that sends each of the n names to a different slot from 0 to n-1, so a lookup
+ * hashes the name once and then compares it against the one name in its slot, with no probing and
+ * no boxed ids. The names themselves are kept as UTF-8 bytes in a single arena (a byte buffer,
+ * which may be part of a memory mapped file), and names being looked up are hashed and compared
+ * by encoding them on the fly, so lookups do not allocate.
+ *
+ * The hash function is built with the hash and displace method: names are split into buckets of
+ * about two by one hash of their bytes, and the buckets are placed from largest to smallest,
+ * trying one seed after another for a second hash until the bucket's names all land in free slots.
+ * Each bucket keeps the seed that worked, and buckets of a single name keep that name's slot
+ * directly.
+ */
+public class SymbolTable {
+
+  // average number of names in each bucket
+  private static final int BUCKET_SIZE = 2;
+  // seeds tried for a bucket before deciding that its names cannot be told apart
+  private static final int MAX_SEED = 1 << 20;
+
+  protected final int size;
+  protected final ByteBuffer arena;
+  protected final IntBuffer offsets; // where each name starts in the arena, followed by its end
+  protected final int[] seeds; // seed of each bucket, or -(slot+1) for buckets of one name
+  protected final int[] ids; // id of the name in each slot
+
+  /**
+   * Builds a table for names kept in an arena.
+   *
+   * @param arena   the UTF-8 bytes of every name, one after another
+   * @param offsets the index in the arena of the first byte of each name, by id, followed by the
+   *                index just past the last name
+   * @param size    the number of names
+   * @throws IllegalArgumentException if two names are the same
+   */
+  public SymbolTable(ByteBuffer arena, IntBuffer offsets, int size) {
+    this.size = size;
+    this.arena = arena;
+    this.offsets = offsets;
+    int bucketCount = Math.max(1, (size + BUCKET_SIZE - 1) / BUCKET_SIZE);
+    this.seeds = new int[bucketCount];
+    this.ids = new int[size];
+
+    long[] hashes = new long[size];
+    for (int id = 0; id < size; id++)
+      hashes[id] = hash(id);
+
+    // sort the ids by bucket, and the buckets from largest to smallest
+    int[] bucketSizes = new int[bucketCount + 1];
+    for (int id = 0; id < size; id++)
+      bucketSizes[bucketOf(hashes[id], bucketCount) + 1]++;
+    int[] bucketStarts = new int[bucketCount + 1];
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+      bucketStarts[bucket + 1] = bucketStarts[bucket] + bucketSizes[bucket + 1];
+    int[] byBucket = new int[size];
+    int[] next = bucketStarts.clone();
+    for (int id = 0; id < size; id++)
+      byBucket[next[bucketOf(hashes[id], bucketCount)]++] = id;
+    int largest = 0;
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+      largest = Math.max(largest, bucketSizes[bucket + 1]);
+    int[] bySize = new int[largest + 2];
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+      bySize[largest - bucketSizes[bucket + 1] + 1]++;
+    for (int i = 0; i <= largest; i++)
+      bySize[i + 1] += bySize[i];
+    int[] order = new int[bucketCount];
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+      order[bySize[largest - bucketSizes[bucket + 1]]++] = bucket;
+
+    boolean[] taken = new boolean[size];
+    int[] slots = new int[BUCKET_SIZE * 8];
+    int nextFree = 0;
+    for (int bucket : order) {
+      int start = bucketStarts[bucket];
+      int count = bucketStarts[bucket + 1] - start;
+      if (count == 0)
+        continue;
+      if (count == 1) {
+        // the remaining buckets hold one name each, which can go in any free slot
+        while (taken[nextFree])
+          nextFree++;
+        taken[nextFree] = true;
+        ids[nextFree] = byBucket[start];
+        seeds[bucket] = -(nextFree + 1);
+        continue;
+      }
+      if (count > slots.length)
+        slots = new int[count];
+      for (int seed = 0;; seed++) {
+        if (seed == MAX_SEED)
+          throw new IllegalArgumentException("Duplicate name: " + nameOf(byBucket[start]));
+        int placed = 0;
+        while (placed < count) {
+          int slot = slotOf(hashes[byBucket[start + placed]], seed, size);
+          if (taken[slot])
+            break;
+          taken[slot] = true;
+          slots[placed++] = slot;
+        }
+        if (placed == count) {
+          for (int i = 0; i < count; i++)
+            ids[slots[i]] = byBucket[start + i];
+          seeds[bucket] = seed;
+          break;
+        }
+        for (int i = 0; i < placed; i++)
+          taken[slots[i]] = false;
+      }
+    }
+  }
+
+  /**
+   * Builds a table for the provided names, encoding them into a new arena.
+   *
+   * @param names the name of each node, by id
+   * @return a table for those names
+   * @throws IllegalArgumentException if two names are the same
+   */
+  public static SymbolTable of(String[] names) {
+    byte[][] encoded = new byte[names.length][];
+    int[] offsets = new int[names.length + 1];
+    for (int id = 0; id < names.length; id++) {
+      encoded[id] = names[id].getBytes(StandardCharsets.UTF_8);
+      offsets[id + 1] = offsets[id] + encoded[id].length;
+    }
+    byte[] arena = new byte[offsets[names.length]];
+    for (int id = 0; id < names.length; id++)
+      System.arraycopy(encoded[id], 0, arena, offsets[id], encoded[id].length);
+    return new SymbolTable(ByteBuffer.wrap(arena), IntBuffer.wrap(offsets), names.length);
+  }
+
+  /**
+   * @param name the name of a node
+   * @return the id of that node, or -1 if no node has that name
+   */
+  public int idOf(CharSequence name) {
+    if (size == 0 || name == null)
+      return -1;
+    long hash = hash(name);
+    int seed = seeds[bucketOf(hash, seeds.length)];
+    int id = ids[seed < 0 ? -seed - 1 : slotOf(hash, seed, size)];
+    return matches(name, id) ? id : -1;
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the name of that node, decoded from the arena
+   */
+  public String nameOf(int id) {
+    int start = offsets.get(id);
+    byte[] bytes = new byte[offsets.get(id + 1) - start];
+    arena.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the number of names in this table
+   */
+  public int size() {
+    return size;
+  }
+
+  // the high 32 bits of a hash scaled to a bucket, which is cheaper than a remainder
+  private static int bucketOf(long hash, int bucketCount) {
+    return (int) (((hash >>> 32) * bucketCount) >>> 32);
+  }
+
+  // the low 32 bits of a hash mixed with the seed and scaled to a slot
+  private static int slotOf(long hash, int seed, int size) {
+    return (int) (((mix(hash + seed * 0x9e3779b97f4a7c15L) & 0xffffffffL) * size) >>> 32);
+  }
+
+  // the 64 bit finalizer of MurmurHash3, which spreads every input bit over the output
+  private static long mix(long hash) {
+    hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  // FNV-1a over the bytes of the name in the arena, then mixed
+  private long hash(int id) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = offsets.get(id); i < offsets.get(id + 1); i++)
+      hash = (hash ^ (arena.get(i) & 0xff)) * 0x100000001b3L;
+    return mix(hash);
+  }
+
+  // the same hash over the UTF-8 bytes of a name, encoded as they are hashed
+  private static long hash(CharSequence name) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        hash = (hash ^ c) * 0x100000001b3L;
+        continue;
+      }
+      long encoded = encode(name, i);
+      for (int b = 0; b < (int) ((encoded >>> 32) & 0xff); b++)
+        hash = (hash ^ ((encoded >>> (8 * b)) & 0xff)) * 0x100000001b3L;
+      if (encoded >>> 40 != 0)
+        i++; // a surrogate pair
+    }
+    return mix(hash);
+  }
+
+  // compares a name with the bytes of the name with the provided id, encoding it as it goes
+  private boolean matches(CharSequence name, int id) {
+    int at = offsets.get(id);
+    int end = offsets.get(id + 1);
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        if (at == end || arena.get(at++) != c)
+          return false;
+        continue;
+      }
+      long encoded = encode(name, i);
+      for (int b = 0; b < (int) ((encoded >>> 32) & 0xff); b++)
+        if (at == end || (arena.get(at++) & 0xff) != ((encoded >>> (8 * b)) & 0xff))
+          return false;
+      if (encoded >>> 40 != 0)
+        i++;
+    }
+    return at == end;
+  }
+
+  /**
+   * Encodes the non-ASCII character at index i of a name as UTF-8, the way String.getBytes does,
+   * including replacing an unpaired surrogate with '?'.
+   *
+   * @return the encoded bytes in the low 32 bits (first byte lowest), the number of bytes in the
+   *         next 8 bits, and 1 in the bits above those when the character was a surrogate pair
+   */
+  private static long encode(CharSequence name, int i) {
+    char c = name.charAt(i);
+    if (c < 0x800)
+      return (2L << 32) | (0xc0 | (c >> 6)) | ((0x80 | (c & 0x3f)) << 8);
+    if (Character.isSurrogate(c)) {
+      if (Character.isHighSurrogate(c) && i + 1 < name.length()
+          && Character.isLowSurrogate(name.charAt(i + 1))) {
+        int code = Character.toCodePoint(c, name.charAt(i + 1));
+        return (1L << 40) | (4L << 32) | (0xf0 | (code >> 18))
+            | ((0x80 | ((code >> 12) & 0x3f)) << 8) | ((0x80 | ((code >> 6) & 0x3f)) << 16)
+            | ((long) (0x80 | (code & 0x3f)) << 24);
+      }
+      return (1L << 32) | '?';
+    }
+    return (3L << 32) | (0xe0 | (c >> 12)) | ((0x80 | ((c >> 6) & 0x3f)) << 8)
+        | ((0x80 | (c & 0x3f)) << 16);
+  }
+}
@@ -0,0 +1,498 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * A small HTTP/1.1 server built on non-blocking channels, which answers every request through a
+ * single handler, as an alternative to com.sun.net.httpserver for the WebApp. One thread accepts
+ * connections and deals them out to a fixed number of event loops, each of which waits on its
+ * own selector for any of its connections to become readable or writable. Connections are kept
+ * alive between requests, and pipelined requests (sent before the responses to earlier ones
+ * arrive) are parsed straight from the bytes read into each connection's reused buffer and
+ * answered in order, with the responses to all the requests read at once gathered into one
+ * direct buffer and written together.
+ *
+ * Only what the WebApp needs is supported: the query of each request's target and its headers are
+ * passed to the handler, request bodies (with a Content-Length) are skipped, and HEAD requests are
+ * answered without a body.
+ */
+public class NioServer {
+
+  /**
+   * Writes the headers and body of the response to a request.
+   */
+  public interface Handler {
+    /**
+     * @param query           the decoded query part of the request's target, or null if it has
+     *                        none
+     * @param requestHeaders  the value of each request header, by name (in any case), or null for
+     *                        headers that were not sent
+     * @param responseHeaders where the headers of the response are put, other than its
+     *                        Content-Length and Connection headers
+     * @param body            the stream to write the body of the response to
+     * @return the http status of the response
+     * @throws Exception if the request cannot be answered, which is reported with status 500
+     */
+    public int handle(String query, Function<String, String> requestHeaders,
+        Map<String, String> responseHeaders, ByteArrayOutputStream body) throws Exception;
+  }
+
+  // largest request head (request line and headers) and body accepted
+  private static final int MAX_REQUEST = 16384;
+  // connections are closed after this long without a request
+  private static final long IDLE_NANOS = 30_000_000_000L;
+
+  private static final byte[] HEAD_END = {'\r', '\n', '\r', '\n'};
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  private final ServerSocketChannel server;
+  private final Handler handler;
+  private final EventLoop[] loops;
+  private volatile boolean running = true;
+
+  private NioServer(ServerSocketChannel server, Handler handler, int threads) {
+    this.server = server;
+    this.handler = handler;
+    this.loops = new EventLoop[threads];
+  }
+
+  /**
+   * Binds a server to a port and starts answering requests.
+   *
+   * @param port    the port to bind to, or 0 for any free port
+   * @param backlog the number of connections that may wait to be accepted
+   * @param threads the number of event loops answering requests
+   * @param handler writes the response to each request
+   * @return the started server
+   * @throws IOException if the server cannot be bound to the port
+   */
+  public static NioServer start(int port, int backlog, int threads, Handler handler)
+      throws IOException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    channel.bind(new InetSocketAddress(port), backlog);
+    NioServer server = new NioServer(channel, handler, Math.max(1, threads));
+    for (int i = 0; i < server.loops.length; i++) {
+      server.loops[i] = server.new EventLoop();
+      new Thread(server.loops[i], "nio-loop-" + (i + 1)).start();
+    }
+    new Thread(server::accept, "nio-acceptor").start();
+    return server;
+  }
+
+  /**
+   * @return the port this server is bound to
+   */
+  public int getPort() {
+    return server.socket().getLocalPort();
+  }
+
+  /**
+   * Stops accepting connections and closes every open one.
+   */
+  public void stop() {
+    running = false;
+    try {
+      server.close();
+    } catch (IOException e) {
+      // closing anyway
+    }
+    for (EventLoop loop : loops)
+      loop.selector.wakeup();
+  }
+
+  // accepts connections and deals them out to the event loops in turn
+  private void accept() {
+    int next = 0;
+    while (running) {
+      try {
+        SocketChannel channel = server.accept();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        EventLoop loop = loops[next++ % loops.length];
+        loop.accepted.add(channel);
+        loop.selector.wakeup();
+      } catch (ClosedChannelException e) {
+        return; // stopped
+      } catch (IOException e) {
+        System.out.println("Unable to accept a connection: " + e.getMessage());
+      }
+    }
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  // the state of each open connection
+  private static class Connection {
+    // bytes read and not yet answered, from the start of the buffer up to its position
+    ByteBuffer in = ByteBuffer.allocate(2048);
+    // the part of the responses that could not be written yet, or null
+    ByteBuffer pending = null;
+    boolean closeAfterWrite = false;
+    long lastActive = System.nanoTime();
+  }
+
+  // a stream whose bytes can be copied out without copying them to a new array first
+  private static class PageBuffer extends ByteArrayOutputStream {
+    PageBuffer() {
+      super(8192);
+    }
+
+    void copyTo(ByteBuffer out) {
+      out.put(buf, 0, count);
+    }
+  }
+
+  private class EventLoop implements Runnable {
+    final Selector selector;
+    final ConcurrentLinkedQueue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+    // the responses to the requests read from one connection at a time, and each response body
+    ByteBuffer out = ByteBuffer.allocateDirect(65536);
+    final PageBuffer page = new PageBuffer();
+    final Map<String, String> headers = new LinkedHashMap<>();
+    long lastIdleCheck = System.nanoTime();
+
+    EventLoop() throws IOException {
+      selector = Selector.open();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running) {
+          selector.select(1000);
+          for (SocketChannel channel; (channel = accepted.poll()) != null;)
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            try {
+              if (key.isValid() && key.isWritable())
+                drain(key);
+              if (key.isValid() && key.isReadable())
+                read(key);
+            } catch (IOException | CancelledKeyException e) {
+              close(key);
+            }
+          }
+          closeIdle();
+        }
+      } catch (IOException e) {
+        System.out.println("Event loop failed: " + e.getMessage());
+      } finally {
+        for (SelectionKey key : selector.keys())
+          close(key);
+        for (SocketChannel channel; (channel = accepted.poll()) != null;) {
+          try {
+            channel.close();
+          } catch (IOException e) {
+            // closed anyway
+          }
+        }
+        try {
+          selector.close();
+        } catch (IOException e) {
+          // closed anyway
+        }
+      }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+      Connection connection = (Connection) key.attachment();
+      if (!connection.in.hasRemaining()) {
+        // only reached with part of a request that fits in a larger buffer
+        ByteBuffer larger = ByteBuffer.allocate(connection.in.capacity() * 2);
+        connection.in.flip();
+        connection.in = larger.put(connection.in);
+      }
+      int read = ((SocketChannel) key.channel()).read(connection.in);
+      if (read < 0) {
+        close(key);
+        return;
+      }
+      connection.lastActive = System.nanoTime();
+      answer(key, connection);
+    }
+
+    // answers every complete request that has been read, in order, until one is incomplete or
+    // a response cannot be written yet
+    private void answer(SelectionKey key, Connection connection) throws IOException {
+      byte[] in = connection.in.array();
+      int length = connection.in.position();
+      int start = 0;
+      while (connection.pending == null && !connection.closeAfterWrite) {
+        int headEnd = indexOf(in, start, length, HEAD_END);
+        if (headEnd < 0) {
+          if (length - start >= MAX_REQUEST)
+            respond(key, connection, 431, false, false, true);
+          break; // wait for the rest of the request, in a larger buffer if it is full
+        }
+        int bodyLength = headerValue(in, start, headEnd, "content-length");
+        if (bodyLength > MAX_REQUEST || indexOfHeader(in, start, headEnd, "transfer-encoding") >= 0
+            || bodyLength < -1) {
+          respond(key, connection, bodyLength > MAX_REQUEST ? 413 : 501, false, false, true);
+          break;
+        }
+        int end = headEnd + HEAD_END.length + Math.max(0, bodyLength);
+        if (end > length)
+          break; // wait for the rest of the body
+        handle(key, connection, in, start, headEnd);
+        start = end;
+      }
+      // keep the unanswered bytes at the start of the buffer
+      if (start > 0) {
+        ByteBuffer buffer = connection.in;
+        System.arraycopy(in, start, buffer.array(), 0, length - start);
+        buffer.position(length - start);
+      }
+      flush(key, connection);
+    }
+
+    // answers the request whose head runs from start to headEnd
+    private void handle(SelectionKey key, Connection connection, byte[] in, int start,
+        int headEnd) throws IOException {
+      int methodEnd = indexOf(in, start, headEnd, new byte[] {' '});
+      int targetEnd = methodEnd < 0 ? -1 : indexOf(in, methodEnd + 1, headEnd, new byte[] {' '});
+      int lineEnd = indexOf(in, start, headEnd + 2, CRLF);
+      if (targetEnd < 0 || lineEnd - targetEnd - 1 != 8
+          || !startsWith(in, targetEnd + 1, "HTTP/1.")) {
+        respond(key, connection, 400, false, false, true);
+        return;
+      }
+      boolean head = targetEnd - start >= 4 && methodEnd - start == 4
+          && startsWith(in, start, "HEAD");
+      boolean http10 = in[lineEnd - 1] == '0';
+      boolean close = http10 ? indexOfHeaderValue(in, start, headEnd, "keep-alive") < 0
+          : indexOfHeaderValue(in, start, headEnd, "close") >= 0;
+
+      String target = new String(in, methodEnd + 1, targetEnd - methodEnd - 1,
+          StandardCharsets.ISO_8859_1);
+      String query;
+      try {
+        query = new URI(target).getQuery();
+      } catch (URISyntaxException e) {
+        respond(key, connection, 400, false, head, true);
+        return;
+      }
+      page.reset();
+      int status;
+      try {
+        status = handler.handle(query,
+            name -> headerText(in, start, headEnd, name.toLowerCase()), headers, page);
+      } catch (Exception e) {
+        System.out.println("Exception Thrown: " + e.toString());
+        headers.clear();
+        page.reset();
+        status = 500;
+      }
+      respond(key, connection, status, http10 && !close, head, close);
+    }
+
+    // adds a response with the page (if any) to the output, writing out what is there first when
+    // there is no room for it
+    private void respond(SelectionKey key, Connection connection, int status, boolean keepAlive,
+        boolean head, boolean close) throws IOException {
+      StringBuilder text = new StringBuilder("HTTP/1.1 ").append(status).append(' ')
+          .append(reason(status)).append("\r\n");
+      headers.forEach((name, value) -> text.append(name).append(": ").append(value)
+          .append("\r\n"));
+      headers.clear();
+      if (status != 304) // which has the headers of the page, but not its length
+        text.append("Content-Length: ").append(page.size()).append("\r\n");
+      if (close)
+        text.append("Connection: close\r\n");
+      else if (keepAlive)
+        text.append("Connection: keep-alive\r\n");
+      byte[] responseHead = bytes(text.append("\r\n").toString());
+      int size = responseHead.length + (head ? 0 : page.size());
+      if (out.remaining() < size) {
+        flush(key, connection);
+        if (out.capacity() < size)
+          out = ByteBuffer.allocateDirect(Integer.highestOneBit(size) * 2);
+      }
+      out.put(responseHead);
+      if (!head)
+        page.copyTo(out);
+      page.reset();
+      if (close)
+        connection.closeAfterWrite = true;
+      if (connection.pending != null) {
+        // a response is still waiting to be written, so this one waits after it
+        out.flip();
+        keep(connection);
+        out.clear();
+      }
+    }
+
+    // keeps what remains of the output after what is already waiting to be written
+    private void keep(Connection connection) {
+      int waiting = connection.pending == null ? 0 : connection.pending.remaining();
+      ByteBuffer pending = ByteBuffer.allocate(waiting + out.remaining());
+      if (connection.pending != null)
+        pending.put(connection.pending);
+      connection.pending = pending.put(out).flip();
+    }
+
+    // writes out the responses gathered so far, keeping what cannot be written yet until the
+    // connection becomes writable
+    private void flush(SelectionKey key, Connection connection) throws IOException {
+      SocketChannel channel = (SocketChannel) key.channel();
+      out.flip();
+      if (out.hasRemaining() && connection.pending == null)
+        channel.write(out);
+      if (out.hasRemaining()) {
+        keep(connection);
+        key.interestOps(SelectionKey.OP_WRITE);
+      } else if (connection.pending == null && connection.closeAfterWrite) {
+        close(key);
+      }
+      out.clear();
+    }
+
+    // writes what was left of the responses, then goes back to reading requests
+    private void drain(SelectionKey key) throws IOException {
+      Connection connection = (Connection) key.attachment();
+      ((SocketChannel) key.channel()).write(connection.pending);
+      if (connection.pending.hasRemaining())
+        return;
+      connection.pending = null;
+      if (connection.closeAfterWrite) {
+        close(key);
+        return;
+      }
+      key.interestOps(SelectionKey.OP_READ);
+      answer(key, connection);
+    }
+
+    private void closeIdle() {
+      long now = System.nanoTime();
+      if (now - lastIdleCheck < 1_000_000_000L)
+        return;
+      lastIdleCheck = now;
+      for (SelectionKey key : selector.keys()) {
+        Connection connection = (Connection) key.attachment();
+        if (now - connection.lastActive > IDLE_NANOS)
+          close(key);
+      }
+    }
+
+    private void close(SelectionKey key) {
+      key.cancel();
+      try {
+        key.channel().close();
+      } catch (IOException e) {
+        // closed anyway
+      }
+    }
+  }
+
+  private static String reason(int status) {
+    switch (status) {
+      case 200: return "OK";
+      case 304: return "Not Modified";
+      case 400: return "Bad Request";
+      case 413: return "Payload Too Large";
+      case 431: return "Request Header Fields Too Large";
+      case 500: return "Internal Server Error";
+      case 501: return "Not Implemented";
+      case 503: return "Service Unavailable";
+      default: return "Status";
+    }
+  }
+
+  // the index of the first occurrence of pattern from start up to end, or -1
+  private static int indexOf(byte[] bytes, int start, int end, byte[] pattern) {
+    outer:
+    for (int i = start; i <= end - pattern.length; i++) {
+      for (int j = 0; j < pattern.length; j++)
+        if (bytes[i + j] != pattern[j])
+          continue outer;
+      return i;
+    }
+    return -1;
+  }
+
+  private static boolean startsWith(byte[] bytes, int start, String prefix) {
+    for (int i = 0; i < prefix.length(); i++)
+      if (bytes[start + i] != prefix.charAt(i))
+        return false;
+    return true;
+  }
+
+  // the index just past the colon of the header with the provided (lower case) name, or -1
+  private static int indexOfHeader(byte[] bytes, int start, int headEnd, String name) {
+    for (int line = indexOf(bytes, start, headEnd, CRLF) + 2; line > 1 && line < headEnd;) {
+      if (line + name.length() < headEnd && bytes[line + name.length()] == ':') {
+        boolean matches = true;
+        for (int i = 0; matches && i < name.length(); i++)
+          matches = Character.toLowerCase((char) bytes[line + i]) == name.charAt(i);
+        if (matches)
+          return line + name.length() + 1;
+      }
+      int next = indexOf(bytes, line, headEnd + 2, CRLF);
+      line = next < 0 ? -1 : next + 2;
+    }
+    return -1;
+  }
+
+  // the value of the header with the provided (lower case) name, or null
+  private static String headerText(byte[] bytes, int start, int headEnd, String name) {
+    int at = indexOfHeader(bytes, start, headEnd, name);
+    if (at < 0)
+      return null;
+    int lineEnd = indexOf(bytes, at, headEnd + 2, CRLF);
+    return new String(bytes, at, lineEnd - at, StandardCharsets.ISO_8859_1).trim();
+  }
+
+  // the non-negative number in a header, -1 if there is no such header, or -2 if it is not one
+  private static int headerValue(byte[] bytes, int start, int headEnd, String name) {
+    int at = indexOfHeader(bytes, start, headEnd, name);
+    if (at < 0)
+      return -1;
+    long value = 0;
+    int digits = 0;
+    for (; at < headEnd && bytes[at] != '\r'; at++) {
+      if (bytes[at] >= '0' && bytes[at] <= '9' && value <= Integer.MAX_VALUE) {
+        value = value * 10 + bytes[at] - '0';
+        digits++;
+      } else if (bytes[at] != ' ' && bytes[at] != '\t') {
+        return -2;
+      }
+    }
+    return digits == 0 ? -2 : (int) Math.min(value, Integer.MAX_VALUE);
+  }
+
+  // the index of a token (in any case) in the value of the Connection header, or -1
+  private static int indexOfHeaderValue(byte[] bytes, int start, int headEnd, String token) {
+    int at = indexOfHeader(bytes, start, headEnd, "connection");
+    if (at < 0)
+      return -1;
+    int lineEnd = indexOf(bytes, at, headEnd + 2, CRLF);
+    for (int i = at; i <= lineEnd - token.length(); i++) {
+      boolean matches = true;
+      for (int j = 0; matches && j < token.length(); j++)
+        matches = Character.toLowerCase((char) bytes[i + j]) == token.charAt(j);
+      if (matches)
+        return i;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,148 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks how the NioServer reads requests and writes responses, by sending raw requests over
+ * sockets to a server on a free port whose handler answers each query with a page that repeats it.
+ */
+public class NioServerTests {
+
+  private NioServer server;
+  private Socket socket;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    server = NioServer.start(0, 50, 1, (query, requestHeaders, responseHeaders, body) -> {
+      // a client that already has the page for a query is told so, as the WebApp does
+      responseHeaders.put("ETag", "\"" + query + "\"");
+      if (("\"" + query + "\"").equals(requestHeaders.apply("If-None-Match")))
+        return 304;
+      responseHeaders.put("Content-Type", "text/plain");
+      body.write(("page for " + query).getBytes(StandardCharsets.UTF_8));
+      return 200;
+    });
+    socket = new Socket("localhost", server.getPort());
+    socket.setSoTimeout(5000);
+  }
+
+  @AfterEach
+  public void teardown() throws IOException {
+    socket.close();
+    server.stop();
+  }
+
+  // a response read from the socket: its status line, headers and body
+  private static class Response {
+    String head;
+    String body;
+
+    String header(String name) {
+      for (String line : head.split("\r\n"))
+        if (line.toLowerCase().startsWith(name.toLowerCase() + ":"))
+          return line.substring(name.length() + 1).trim();
+      return null;
+    }
+  }
+
+  private void send(String request) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+    out.flush();
+  }
+
+  private static String get(String query) {
+    return "GET /?" + query + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  }
+
+  // reads the next response, with a body unless it answers a HEAD request or has status 304
+  private Response read(boolean withBody) throws IOException {
+    InputStream in = socket.getInputStream();
+    ByteArrayOutputStream head = new ByteArrayOutputStream();
+    while (!head.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+      int b = in.read();
+      assertTrue(b >= 0, "The connection closed before the end of a response head");
+      head.write(b);
+    }
+    Response response = new Response();
+    response.head = head.toString(StandardCharsets.ISO_8859_1);
+    String length = response.header("Content-Length");
+    byte[] body = withBody && length != null ? in.readNBytes(Integer.parseInt(length))
+        : new byte[0];
+    response.body = new String(body, StandardCharsets.UTF_8);
+    return response;
+  }
+
+  @Test
+  public void pipelinedRequestsTest() throws IOException {
+    // two requests sent in one write are answered in order
+    send(get("from=A") + get("from=B"));
+    Response first = read(true);
+    Response second = read(true);
+    assertTrue(first.head.startsWith("HTTP/1.1 200 OK\r\n"));
+    assertEquals("page for from=A", first.body);
+    assertEquals("page for from=B", second.body);
+    assertNull(second.header("Connection"));
+  }
+
+  @Test
+  public void splitHeadTest() throws IOException, InterruptedException {
+    // a request head that arrives in pieces is answered once it is complete
+    String request = get("start=Union%20South&end=Memorial%20Union");
+    send(request.substring(0, 20));
+    Thread.sleep(100);
+    send(request.substring(20, request.length() - 2));
+    Thread.sleep(100);
+    send(request.substring(request.length() - 2));
+    assertEquals("page for start=Union South&end=Memorial Union", read(true).body);
+  }
+
+  @Test
+  public void headTest() throws IOException {
+    // HEAD gets the length of the page but not the page, so the next response follows at once
+    send("HEAD /?from=A HTTP/1.1\r\nHost: localhost\r\n\r\n" + get("from=B"));
+    Response head = read(false);
+    assertTrue(head.head.startsWith("HTTP/1.1 200 OK\r\n"));
+    assertEquals("page for from=A".length(), Integer.parseInt(head.header("Content-Length")));
+    assertEquals("page for from=B", read(true).body);
+  }
+
+  @Test
+  public void notModifiedTest() throws IOException {
+    send("GET /?from=A HTTP/1.1\r\nIf-None-Match: \"from=A\"\r\n\r\n" + get("from=B"));
+    Response notModified = read(false);
+    assertTrue(notModified.head.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+    assertEquals("\"from=A\"", notModified.header("ETag"));
+    assertNull(notModified.header("Content-Length"));
+    assertEquals("page for from=B", read(true).body);
+  }
+
+  @Test
+  public void oversizedHeadTest() throws IOException {
+    // a head that does not end within the largest request accepted is refused
+    String start = "GET /?from=A HTTP/1.1\r\nCookie: ";
+    send(start + "x".repeat(16384 - start.length()));
+    Response refused = read(true);
+    assertTrue(refused.head.startsWith("HTTP/1.1 431 Request Header Fields Too Large\r\n"));
+    assertEquals("close", refused.header("Connection"));
+    assertEquals(-1, socket.getInputStream().read());
+  }
+
+  @Test
+  public void connectionCloseTest() throws IOException {
+    // the connection is closed after the response to a request that asks for that, and requests
+    // pipelined after it are not answered
+    send("GET /?from=A HTTP/1.1\r\nConnection: close\r\n\r\n" + get("from=B"));
+    Response response = read(true);
+    assertEquals("page for from=A", response.body);
+    assertEquals("close", response.header("Connection"));
+    assertEquals(-1, socket.getInputStream().read());
+  }
+}
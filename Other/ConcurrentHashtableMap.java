@@ -0,0 +1,206 @@
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread safe implementation of MapADT that splits its keys across a fixed
+ * number of stripes. Each stripe is a ProbingHashtableMap guarded by its own
+ * read/write lock, so lookups in any stripe run concurrently with each other,
+ * and puts or removes only block operations on the same stripe. Each stripe
+ * resizes itself while holding its own write lock.
+ */
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    protected final ProbingHashtableMap<KeyType, ValueType>[] stripes;
+    protected final ReentrantReadWriteLock[] locks;
+    protected final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates a map with 16 stripes.
+     */
+    public ConcurrentHashtableMap() {
+	this(16, 64);
+    }
+
+    // creates a map with stripeCount (rounded up to a power of two) stripes
+    // that start with capacity slots between them
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ConcurrentHashtableMap(int stripeCount, int capacity) {
+	int count = ProbingHashtableMap.tableSizeFor(stripeCount);
+	stripes = (ProbingHashtableMap<KeyType, ValueType>[]) new ProbingHashtableMap[count];
+	locks = new ReentrantReadWriteLock[count];
+	for (int i = 0; i < count; i++) {
+	    stripes[i] = ProbingHashtableMap.withCapacity(Math.max(2, capacity / count));
+	    locks[i] = new ReentrantReadWriteLock();
+	}
+    }
+
+    /**
+     * Creates a map with the provided number of independently locked stripes.
+     * @param stripeCount the number of stripes, rounded up to a power of two
+     * @param capacity the initial capacity across all stripes
+     * @return the new empty map
+     */
+    public static <KeyType, ValueType> ConcurrentHashtableMap<KeyType, ValueType> withStripes(
+            int stripeCount, int capacity) {
+	return new ConcurrentHashtableMap<>(stripeCount, capacity);
+    }
+
+    // picks a stripe from the high bits of the hash, leaving the low bits
+    // that choose a slot within each stripe evenly spread
+    protected int stripeFor(Object key) {
+	return (ProbingHashtableMap.spread(key.hashCode()) >>> 16) & (stripes.length - 1);
+    }
+
+    /**
+     * Adds a new key,value pair/mapping to this collection.
+     * @param key the key of the key,value pair
+     * @param value the value that key maps to
+     * @throws IllegalArgumentException if key already maps to a value
+     * @throws NullPointerException if key is null
+     */
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+	if (key == null) {
+	    throw new NullPointerException("The key is not valid");
+	}
+	int stripe = stripeFor(key);
+	locks[stripe].writeLock().lock();
+	try {
+	    stripes[stripe].put(key, value);
+	    size.incrementAndGet();
+	} finally {
+	    locks[stripe].writeLock().unlock();
+	}
+    }
+
+    /**
+     * Checks whether a key maps to a value in this collection.
+     * @param key the key to check
+     * @return true if the key maps to a value, and false is the
+     *         key doesn't map to a value
+     */
+    @Override
+    public boolean containsKey(KeyType key) {
+	if (key == null) {
+	    return false;
+	}
+	int stripe = stripeFor(key);
+	locks[stripe].readLock().lock();
+	try {
+	    return stripes[stripe].containsKey(key);
+	} finally {
+	    locks[stripe].readLock().unlock();
+	}
+    }
+
+    /**
+     * Retrieves the specific value that a key maps to.
+     * @param key the key to look up
+     * @return the value that key maps to
+     * @throws NoSuchElementException when key is not stored in this
+     *         collection
+     */
+    @Override
+    public ValueType get(KeyType key) throws NoSuchElementException {
+	if (key == null) {
+	    throw new NoSuchElementException("The key is not stored");
+	}
+	int stripe = stripeFor(key);
+	locks[stripe].readLock().lock();
+	try {
+	    return stripes[stripe].get(key);
+	} finally {
+	    locks[stripe].readLock().unlock();
+	}
+    }
+
+    /**
+     * Remove the mapping for a key from this collection.
+     * @param key the key whose mapping to remove
+     * @return the value that the removed key mapped to
+     * @throws NoSuchElementException when key is not stored in this
+     *         collection
+     */
+    @Override
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+	if (key == null) {
+	    throw new NoSuchElementException("The key is not stored");
+	}
+	int stripe = stripeFor(key);
+	locks[stripe].writeLock().lock();
+	try {
+	    ValueType value = stripes[stripe].remove(key);
+	    size.decrementAndGet();
+	    return value;
+	} finally {
+	    locks[stripe].writeLock().unlock();
+	}
+    }
+
+    /**
+     * Removes all key,value pairs from this collection. Stripes are cleared
+     * one at a time, so pairs put concurrently may survive.
+     */
+    @Override
+    public void clear() {
+	for (int i = 0; i < stripes.length; i++) {
+	    locks[i].writeLock().lock();
+	    try {
+		size.addAndGet(-stripes[i].getSize());
+		stripes[i].clear();
+	    } finally {
+		locks[i].writeLock().unlock();
+	    }
+	}
+    }
+
+    /**
+     * Retrieves the number of keys stored in this collection.
+     * @return the number of keys stored in this collection
+     */
+    @Override
+    public int getSize() {
+	return size.get();
+    }
+
+    /**
+     * Retrieves this collection's capacity.
+     * @return the total size of the underlying arrays of all stripes
+     */
+    @Override
+    public int getCapacity() {
+	int capacity = 0;
+	for (int i = 0; i < stripes.length; i++) {
+	    locks[i].readLock().lock();
+	    try {
+		capacity += stripes[i].getCapacity();
+	    } finally {
+		locks[i].readLock().unlock();
+	    }
+	}
+	return capacity;
+    }
+
+    /**
+     * Gets a weakly consistent snapshot of the keys in the table. Each stripe
+     * is copied while holding its lock, so the result contains every key that
+     * was stored throughout the call, and may or may not contain keys that
+     * were put or removed while it ran.
+     * @return the keys in the table
+     */
+    @Override
+    public LinkedList<KeyType> getKeys() {
+	LinkedList<KeyType> keys = new LinkedList<>();
+	for (int i = 0; i < stripes.length; i++) {
+	    locks[i].readLock().lock();
+	    try {
+		keys.addAll(stripes[i].getKeys());
+	    } finally {
+		locks[i].readLock().unlock();
+	    }
+	}
+	return keys;
+    }
+}
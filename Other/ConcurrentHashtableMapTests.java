@@ -0,0 +1,48 @@
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests for ConcurrentHashtableMap.
+ */
+public class ConcurrentHashtableMapTests {
+
+    @Test
+    /**
+     * Test that concurrent puts from several threads are all stored.
+     */
+    public void testConcurrentPuts() throws InterruptedException {
+	ConcurrentHashtableMap<Integer, Integer> testMap = ConcurrentHashtableMap.withStripes(4, 8);
+	Thread[] threads = new Thread[4];
+	for (int t = 0; t < threads.length; t++) {
+	    final int offset = t * 10000;
+	    threads[t] = new Thread(() -> {
+		    for (int i = 0; i < 10000; i++) {
+			testMap.put(offset + i, i);
+		    }
+	    });
+	    threads[t].start();
+	}
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	Assertions.assertEquals(40000, testMap.getSize());
+	Assertions.assertEquals(40000, testMap.getKeys().size());
+	Assertions.assertEquals(123, testMap.get(30123));
+    }
+
+    @Test
+    /**
+     * Test that the map keeps the MapADT contract for single threaded use.
+     */
+    public void testSingleThreadedContract() {
+	ConcurrentHashtableMap<String, Integer> testMap = new ConcurrentHashtableMap<>();
+	testMap.put("Pizza", 20);
+	Assertions.assertThrows(IllegalArgumentException.class, () -> testMap.put("Pizza", 5));
+	Assertions.assertThrows(NoSuchElementException.class, () -> testMap.remove("Burger"));
+	Assertions.assertEquals(1, testMap.getSize());
+	Assertions.assertEquals(20, testMap.remove("Pizza"));
+	Assertions.assertFalse(testMap.containsKey("Pizza"));
+	Assertions.assertEquals(0, testMap.getSize());
+    }
+}
@@ -5,6 +5,7 @@
 // Lecturer: Gary dahl
 // Notes to Grader: None
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
@@ -13,6 +14,20 @@ import java.util.NoSuchElementException;
 public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueType> {
 
     protected LinkedList<Pair>[] table = null;
+
+    // While an incremental resize is in progress, this is the previous table
+    // whose buckets are still being moved into table (null otherwise)
+    protected LinkedList<Pair>[] oldTable = null;
+    // index of the next bucket in oldTable to be moved into table
+    protected int migrateIndex = 0;
+    // number of oldTable buckets moved by each put or remove
+    protected static final int MIGRATION_STEP = 4;
+
+    // when true, resizes move a few buckets per put or remove instead of all
+    // buckets at once
+    protected boolean incrementalResize = false;
+
+    protected int size = 0;
     
     protected class Pair {
 
@@ -35,6 +50,92 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
 	table = (LinkedList<Pair>[]) new LinkedList[64];
     }
 
+    /**
+     * Creates a map that can spread the work of each resize across later
+     * puts and removes. While such a resize is in progress both the old and
+     * the new table are searched by lookups, and lookups never move pairs,
+     * so concurrent readers of an unchanging map stay safe. Maps made with
+     * the other constructors resize all at once.
+     * @param capacity the initial capacity of this map
+     * @param incrementalResize true to resize incrementally
+     */
+    public HashtableMap(int capacity, boolean incrementalResize) {
+	this(capacity);
+	this.incrementalResize = incrementalResize;
+    }
+
+    // index of the bucket for key in a table with the provided length
+    protected static int indexFor(Object key, int length) {
+	//Clears the sign bit rather than using Math.abs, which stays negative
+	//for Integer.MIN_VALUE
+	return (key.hashCode() & 0x7fffffff) % length;
+    }
+
+    // finds the pair storing key in either table, or returns null
+    protected Pair findPair(KeyType key) {
+	LinkedList<Pair> bucket = table[indexFor(key, table.length)];
+	if(bucket != null) {
+	    for(Pair pair : bucket) {
+		if(pair.key.equals(key)) {
+		    return pair;
+		}
+	    }
+	}
+	if(oldTable != null) {
+	    bucket = oldTable[indexFor(key, oldTable.length)];
+	    if(bucket != null) {
+		for(Pair pair : bucket) {
+		    if(pair.key.equals(key)) {
+			return pair;
+		    }
+		}
+	    }
+	}
+	return null;
+    }
+
+    // adds an existing pair into the matching bucket of table
+    private void addToTable(Pair pair) {
+	int index = indexFor(pair.key, table.length);
+	//Create a new linked list for each index if not done so yet
+	if(table[index] == null) {
+	    table[index] = new LinkedList<>();
+	}
+	table[index].add(pair);
+    }
+
+    // moves up to steps buckets of oldTable into table, reusing their pairs
+    private void migrate(int steps) {
+	while(oldTable != null && steps-- > 0) {
+	    LinkedList<Pair> bucket = oldTable[migrateIndex];
+	    if(bucket != null) {
+		for(Pair pair : bucket) {
+		    addToTable(pair);
+		}
+		oldTable[migrateIndex] = null;
+	    }
+	    migrateIndex++;
+	    if(migrateIndex == oldTable.length) {
+		oldTable = null;
+	    }
+	}
+    }
+
+    // doubles the capacity of table, moving pairs now or over later calls
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void resize() {
+	//Finish any earlier resize before starting the next one
+	if(oldTable != null) {
+	    migrate(oldTable.length);
+	}
+	oldTable = table;
+	migrateIndex = 0;
+	table = (LinkedList<Pair>[])new LinkedList[oldTable.length * 2];
+	if(!incrementalResize) {
+	    migrate(oldTable.length);
+	}
+    }
+
     /**
      * Adds a new key,value pair/mapping to this collection.
      * @param key the key of the key,value pair
@@ -43,55 +144,24 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
      * @throws NullPointerException if key is null
      */
     @Override
-    @SuppressWarnings("unchecked")
     public void put(KeyType key, ValueType value) throws IllegalArgumentException {
 	if(key == null) {
 	    throw new NullPointerException("The key is not valid");
 	}
 
-        int index = Math.abs(key.hashCode()) % getCapacity();
-
-	//Since its chaining method we need to create linkedList for each index
-	if(table[index] == null) {
-	    table[index] = new LinkedList<>();
-	}
-	else {
-	    //Check if the key is already in the table
-	    for(int i = 0; i < table[index].size(); i++) {
-		Pair pair = table[index].get(i);
-		if(pair.key.equals(key)) {
-		    throw new IllegalArgumentException("The key is already in the Hash Table");
-		}
-	    }
+	//Check if the key is already in the table
+	if(findPair(key) != null) {
+	    throw new IllegalArgumentException("The key is already in the Hash Table");
 	}
+	migrate(MIGRATION_STEP);
 
 	//add the key value pair in the Hash Table
-	table[index].add(new Pair(key,value));
+	addToTable(new Pair(key, value));
+	size++;
 
 	//Check if the load factor is greater than or equal to 80%, if so resize
-	if(((double) getSize() / getCapacity()) >= 0.8) {
-	     LinkedList<Pair>[] tableWithData = table;
-	     table = (LinkedList<Pair>[])new LinkedList[tableWithData.length * 2];
-
-	     for(int i = 0; i < tableWithData.length; i++) {
-		 if(tableWithData[i] != null) {
-		     //Check the linkedList within the index since its chaining 
-		     for(int j = 0; j < tableWithData[i].size(); j++) {
-			 Pair keyValue = tableWithData[i].get(j);
-
-			 //Get the new index for the keyValue pair in the new linkedList capacity
-			 int newResizeIndex = Math.abs(keyValue.key.hashCode()) % getCapacity();
-
-			 //Create a new linked list for each index if not done so yet
-			 if(table[newResizeIndex] == null) {
-			     table[newResizeIndex] = new LinkedList<>();
-			 }
-
-			 //add new keyValuePair in the new index
-			 table[newResizeIndex].add(new Pair(keyValue.key, keyValue.value));
-		     }
-		 }
-	     }
+	if(((double) size / getCapacity()) >= 0.8) {
+	    resize();
 	}
     }
 
@@ -104,23 +174,7 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
     @Override
     public boolean containsKey(KeyType key) {
 	//Checks if the key is null
-	if(key == null) {
-	    return false;
-	}
-	else {
-	    //Gets index based on the hashCode
-	    int index = Math.abs(key.hashCode()) % getCapacity();
-	    if(table[index] != null) {
-		for(int i = 0; i < table[index].size(); i++) {
-		    Pair keyValue = table[index].get(i);
-		    //If there is a match then returns true, else false
-		    if(keyValue.key.equals(key)) {
-			return true;
-		    }
-		}
-	    }
-	}
-	return false;
+	return key != null && findPair(key) != null;
     }
 
     /**
@@ -136,18 +190,11 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
 	if(key == null) {
 	    throw new NoSuchElementException("The key is not stored");   
 	}
-	//Gets index based on the hashCode
-	int index = Math.abs(key.hashCode()) % getCapacity();
-	if(table[index] != null) {
-	    for(int i = 0; i < table[index].size(); i++) {
-		Pair keyValue = table[index].get(i);
-		 //If there is a match then returns its value, else throws exception
-		if(keyValue.key.equals(key)) {
-		    return keyValue.value;
-		}
-	    }
+	Pair pair = findPair(key);
+	if(pair == null) {
+	    throw new NoSuchElementException("The key is not stored in the Hashtable");
 	}
-	throw new NoSuchElementException("The key is not stored in the Hashtable");
+	return pair.value;
     }
 
     /**
@@ -163,20 +210,33 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
 	if(key == null) {
             throw new NoSuchElementException("The key is not stored");
         }
-	//Gets index based on the hashCode
-        int index = Math.abs(key.hashCode()) % getCapacity();
-        if(table[index] != null) {
-            for(int i = 0; i < table[index].size(); i++) {
-                Pair keyValue = table[index].get(i);
-		//If there is a match then removes it keyValue pair then returns the value that is removed, else throws exception
-                if(keyValue.key.equals(key)) {
-		    table[index].remove(i);
-		    return keyValue.value;
-     
+	migrate(MIGRATION_STEP);
+	Pair removed = removeFrom(table, key);
+	if(removed == null && oldTable != null) {
+	    removed = removeFrom(oldTable, key);
+	}
+	if(removed == null) {
+	    throw new NoSuchElementException("The key is not stored in the Hashtable");
+	}
+	size--;
+	return removed.value;
+    }
+
+    // removes the pair for key from the provided table, returning that pair
+    // or null when it is not found there
+    private Pair removeFrom(LinkedList<Pair>[] from, KeyType key) {
+	LinkedList<Pair> bucket = from[indexFor(key, from.length)];
+	if(bucket != null) {
+	    Iterator<Pair> pairs = bucket.iterator();
+	    while(pairs.hasNext()) {
+		Pair pair = pairs.next();
+		if(pair.key.equals(key)) {
+		    pairs.remove();
+		    return pair;
 		}
 	    }
 	}
-	throw new NoSuchElementException("The key is not stored in the Hashtable");
+	return null;
     }
 
      /**
@@ -188,6 +248,8 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
 	for(int i = 0; i < getCapacity(); i++) {
 	    table[i] = null;
 	}
+	oldTable = null;
+	size = 0;
     }
 
     /**
@@ -196,13 +258,6 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
      */
     @Override
     public int getSize() {
-	int size = 0;
-	//Gets the size of each linkedlist per index
-	for(int i = 0; i < getCapacity(); i++) {
-	    if(table[i] != null) {
-		size += table[i].size();
-	    }
-	}
 	return size;
     }
 
@@ -223,14 +278,22 @@ public class HashtableMap <KeyType, ValueType> implements MapADT<KeyType, ValueT
     @Override
     public LinkedList<KeyType> getKeys() {
         LinkedList<KeyType> keys = new LinkedList<>();
-        for (LinkedList<Pair> keyValue : table) {
+        addKeys(table, keys);
+        if (oldTable != null) {
+            addKeys(oldTable, keys);
+        }
+        return keys;
+    }
+
+    // adds the keys of every pair in the provided table to keys
+    private void addKeys(LinkedList<Pair>[] from, LinkedList<KeyType> keys) {
+        for (LinkedList<Pair> keyValue : from) {
             if (keyValue != null) {
                 for (Pair pair : keyValue) {
                     keys.add(pair.key);
                 }
             }
         }
-        return keys;
     }
 
     
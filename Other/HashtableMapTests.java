@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests for the incremental resizing of HashtableMap, and for keys whose hash
+ * code is Integer.MIN_VALUE.
+ */
+public class HashtableMapTests {
+
+    @Test
+    /**
+     * Test that an incremental resize keeps every pair reachable while its
+     * buckets are moved, and reuses the existing pairs.
+     */
+    public void testIncrementalResize() {
+	HashtableMap<Integer, Integer> testMap = new HashtableMap<>(8, true);
+	boolean sawMigration = false;
+	for(int i = 0; i < 500; i++) {
+	    testMap.put(i, i * 2);
+	    sawMigration |= testMap.oldTable != null;
+	    //Every pair stored so far must be found in one of the two tables
+	    for(int j = 0; j <= i; j += 37) {
+		Assertions.assertEquals(j * 2, testMap.get(j));
+	    }
+	}
+	Assertions.assertTrue(sawMigration);
+	Assertions.assertEquals(500, testMap.getSize());
+	Assertions.assertEquals(500, testMap.getKeys().size());
+
+	//Pairs are moved rather than recreated
+	HashtableMap<Integer, Integer>.Pair before = testMap.findPair(3);
+	for(int i = 500; i < 2000; i++) {
+	    testMap.put(i, i);
+	}
+	Assertions.assertSame(before, testMap.findPair(3));
+	Assertions.assertEquals(6, testMap.remove(3));
+	Assertions.assertEquals(1999, testMap.getSize());
+    }
+
+    @Test
+    /**
+     * Test that keys whose hashCode is Integer.MIN_VALUE can be stored.
+     */
+    public void testMinValueHashCode() {
+	HashtableMap<Integer, String> testMap = new HashtableMap<>(34);
+	testMap.put(Integer.MIN_VALUE, "min");
+	Assertions.assertEquals("min", testMap.get(Integer.MIN_VALUE));
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput of ConcurrentHashtableMap against a HashtableMap
+ * guarded by a single lock, for 1 up to N threads running a read mostly mix
+ * of lookups and updates. Run with: java MapBenchmark [maxThreads]
+ */
+public class MapBenchmark {
+
+    private static final int KEYS = 100_000;
+    private static final long RUN_MILLIS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+	int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+	    : Runtime.getRuntime().availableProcessors();
+	System.out.println("threads  HashtableMap(locked) ops/s  ConcurrentHashtableMap ops/s");
+	for (int threads = 1; threads <= maxThreads; threads *= 2) {
+	    HashtableMap<Integer, Integer> single = new HashtableMap<>();
+	    ConcurrentHashtableMap<Integer, Integer> striped = new ConcurrentHashtableMap<>();
+	    for (int i = 0; i < KEYS; i++) {
+		single.put(i, i);
+		striped.put(i, i);
+	    }
+	    long lockedOps = run(threads, single, true);
+	    long stripedOps = run(threads, striped, false);
+	    System.out.printf("%7d  %27d  %28d%n", threads, lockedOps, stripedOps);
+	}
+    }
+
+    // runs threads against map for RUN_MILLIS, returning operations per second
+    private static long run(int threads, MapADT<Integer, Integer> map, boolean lock)
+	throws InterruptedException {
+	AtomicLong ops = new AtomicLong();
+	long end = System.currentTimeMillis() + RUN_MILLIS;
+	Thread[] workers = new Thread[threads];
+	for (int t = 0; t < threads; t++) {
+	    final int seed = t;
+	    workers[t] = new Thread(() -> {
+		    long count = 0;
+		    int key = seed * 7919;
+		    while (System.currentTimeMillis() < end) {
+			for (int i = 0; i < 1000; i++) {
+			    key = (key * 31 + 17) % KEYS;
+			    if (key < 0) key += KEYS;
+			    // one update (a remove and put back) per ten lookups
+			    boolean update = i % 10 == 0;
+			    if (lock) {
+				synchronized (map) {
+				    step(map, key, update);
+				}
+			    } else {
+				step(map, key, update);
+			    }
+			}
+			count += 1000;
+		    }
+		    ops.addAndGet(count);
+	    });
+	    workers[t].start();
+	}
+	for (Thread worker : workers) {
+	    worker.join();
+	}
+	return ops.get() * 1000 / RUN_MILLIS;
+    }
+
+    private static void step(MapADT<Integer, Integer> map, int key, boolean update) {
+	if (update) {
+	    try {
+		map.put(key, map.remove(key));
+	    } catch (java.util.NoSuchElementException e) {
+		// another thread is updating this key
+	    }
+	} else if (map.containsKey(key)) {
+	    try {
+		map.get(key);
+	    } catch (java.util.NoSuchElementException e) {
+		// removed between the two calls by another thread
+	    }
+	}
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * An open addressing implementation of MapADT. Keys and values are stored in
+ * two flat parallel arrays whose length is always a power of two, and
+ * collisions are resolved by linear probing. Removed pairs leave a tombstone
+ * behind so that probing continues past them, and the number of stored keys
+ * is tracked as pairs are added and removed instead of being recounted.
+ */
+public class ProbingHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    // marks a slot whose pair was removed, so that lookups keep probing
+    protected static final Object TOMBSTONE = new Object();
+
+    // resize once live keys plus tombstones fill this fraction of the table
+    protected static final double MAX_LOAD_FACTOR = 0.75;
+
+    // number of slots in a new or cleared table
+    protected static final int DEFAULT_CAPACITY = 64;
+
+    protected Object[] keys;
+    protected Object[] values;
+    protected int size = 0;
+    protected int tombstones = 0;
+
+    /**
+     * Creates a map with the default capacity.
+     */
+    public ProbingHashtableMap() {
+	this(DEFAULT_CAPACITY);
+    }
+
+    // creates a map with the smallest power of two slots that is at least
+    // capacity
+    private ProbingHashtableMap(int capacity) {
+	allocate(tableSizeFor(capacity));
+    }
+
+    /**
+     * Creates a map whose capacity is the smallest power of two that is at
+     * least the requested capacity.
+     * @param capacity the minimum number of slots to start with
+     * @return the new empty map
+     */
+    public static <KeyType, ValueType> ProbingHashtableMap<KeyType, ValueType> withCapacity(
+            int capacity) {
+	return new ProbingHashtableMap<>(capacity);
+    }
+
+    // rounds capacity up to a power of two that is at least 2
+    protected static int tableSizeFor(int capacity) {
+	int n = 2;
+	while (n < capacity && n < (1 << 30)) {
+	    n <<= 1;
+	}
+	return n;
+    }
+
+    // mixes the high bits of hashCode into the low bits that pick a slot
+    protected static int spread(int hash) {
+	hash *= 0x9E3779B9;
+	return hash ^ (hash >>> 16);
+    }
+
+    private void allocate(int capacity) {
+	keys = new Object[capacity];
+	values = new Object[capacity];
+	tombstones = 0;
+    }
+
+    // returns the slot holding key, or -1 when key is not stored
+    protected int indexOf(Object key) {
+	int mask = keys.length - 1;
+	int index = spread(key.hashCode()) & mask;
+	Object k;
+	while ((k = keys[index]) != null) {
+	    if (k != TOMBSTONE && k.equals(key)) {
+		return index;
+	    }
+	    index = (index + 1) & mask;
+	}
+	return -1;
+    }
+
+    /**
+     * Adds a new key,value pair/mapping to this collection.
+     * @param key the key of the key,value pair
+     * @param value the value that key maps to
+     * @throws IllegalArgumentException if key already maps to a value
+     * @throws NullPointerException if key is null
+     */
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+	if (key == null) {
+	    throw new NullPointerException("The key is not valid");
+	}
+	int mask = keys.length - 1;
+	int index = spread(key.hashCode()) & mask;
+	int firstTombstone = -1;
+	Object k;
+	// probe until an empty slot, remembering the first reusable tombstone
+	while ((k = keys[index]) != null) {
+	    if (k == TOMBSTONE) {
+		if (firstTombstone < 0) {
+		    firstTombstone = index;
+		}
+	    } else if (k.equals(key)) {
+		throw new IllegalArgumentException("The key is already in the Hash Table");
+	    }
+	    index = (index + 1) & mask;
+	}
+	if (firstTombstone >= 0) {
+	    index = firstTombstone;
+	    tombstones--;
+	}
+	keys[index] = key;
+	values[index] = value;
+	size++;
+
+	if (size + tombstones > keys.length * MAX_LOAD_FACTOR) {
+	    // grow when live keys need the room, otherwise just purge tombstones
+	    rehash(size * 2 > keys.length * MAX_LOAD_FACTOR ? keys.length * 2 : keys.length);
+	}
+    }
+
+    // moves every live pair into freshly allocated arrays of newCapacity
+    private void rehash(int newCapacity) {
+	Object[] oldKeys = keys;
+	Object[] oldValues = values;
+	allocate(newCapacity);
+	int mask = newCapacity - 1;
+	for (int i = 0; i < oldKeys.length; i++) {
+	    Object k = oldKeys[i];
+	    if (k != null && k != TOMBSTONE) {
+		int index = spread(k.hashCode()) & mask;
+		while (keys[index] != null) {
+		    index = (index + 1) & mask;
+		}
+		keys[index] = k;
+		values[index] = oldValues[i];
+	    }
+	}
+    }
+
+    /**
+     * Checks whether a key maps to a value in this collection.
+     * @param key the key to check
+     * @return true if the key maps to a value, and false is the
+     *         key doesn't map to a value
+     */
+    @Override
+    public boolean containsKey(KeyType key) {
+	return key != null && indexOf(key) >= 0;
+    }
+
+    /**
+     * Retrieves the specific value that a key maps to.
+     * @param key the key to look up
+     * @return the value that key maps to
+     * @throws NoSuchElementException when key is not stored in this
+     *         collection
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType get(KeyType key) throws NoSuchElementException {
+	int index = key == null ? -1 : indexOf(key);
+	if (index < 0) {
+	    throw new NoSuchElementException("The key is not stored in the Hashtable");
+	}
+	return (ValueType) values[index];
+    }
+
+    /**
+     * Remove the mapping for a key from this collection.
+     * @param key the key whose mapping to remove
+     * @return the value that the removed key mapped to
+     * @throws NoSuchElementException when key is not stored in this
+     *         collection
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+	int index = key == null ? -1 : indexOf(key);
+	if (index < 0) {
+	    throw new NoSuchElementException("The key is not stored in the Hashtable");
+	}
+	ValueType value = (ValueType) values[index];
+	// an empty next slot ends every probe sequence through this one, so
+	// the slot can be emptied outright instead of leaving a tombstone
+	if (keys[(index + 1) & (keys.length - 1)] == null) {
+	    keys[index] = null;
+	} else {
+	    keys[index] = TOMBSTONE;
+	    tombstones++;
+	}
+	values[index] = null;
+	size--;
+	return value;
+    }
+
+    /**
+     * Removes all key,value pairs from this collection. The table is dropped
+     * and replaced by a new one of the default capacity, rather than emptied
+     * slot by slot, so this takes the same time however large the table grew.
+     */
+    @Override
+    public void clear() {
+	allocate(tableSizeFor(DEFAULT_CAPACITY));
+	size = 0;
+    }
+
+    /**
+     * Retrieves the number of keys stored in this collection.
+     * @return the number of keys stored in this collection
+     */
+    @Override
+    public int getSize() {
+	return size;
+    }
+
+    /**
+     * Retrieves this collection's capacity.
+     * @return the size of the underlying arrays for this collection
+     */
+    @Override
+    public int getCapacity() {
+	return keys.length;
+    }
+
+    /**
+     * Gets the list of keys in the table
+     * @return the keys in the table
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public LinkedList<KeyType> getKeys() {
+	LinkedList<KeyType> list = new LinkedList<>();
+	for (Object k : keys) {
+	    if (k != null && k != TOMBSTONE) {
+		list.add((KeyType) k);
+	    }
+	}
+	return list;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.LinkedList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests for ProbingHashtableMap.
+ */
+public class ProbingHashtableMapTests {
+
+    @Test
+    /**
+     * Test that pairs can be stored, retrieved and counted across resizes.
+     */
+    public void testPutGetAndResize() {
+	ProbingHashtableMap<Integer, String> testMap = ProbingHashtableMap.withCapacity(4);
+	for (int i = 0; i < 1000; i++) {
+	    testMap.put(i, "value" + i);
+	}
+	Assertions.assertEquals(1000, testMap.getSize());
+	Assertions.assertTrue(testMap.getCapacity() >= 1000 / ProbingHashtableMap.MAX_LOAD_FACTOR);
+	for (int i = 0; i < 1000; i++) {
+	    Assertions.assertEquals("value" + i, testMap.get(i));
+	}
+	Assertions.assertThrows(IllegalArgumentException.class, () -> testMap.put(7, "again"));
+	// clearing replaces the grown table with a new one of the default capacity
+	testMap.clear();
+	Assertions.assertEquals(0, testMap.getSize());
+	Assertions.assertEquals(ProbingHashtableMap.DEFAULT_CAPACITY, testMap.getCapacity());
+	Assertions.assertFalse(testMap.containsKey(7));
+	testMap.put(7, "again");
+	Assertions.assertEquals("again", testMap.get(7));
+    }
+
+    @Test
+    /**
+     * Test that keys whose hashCode is Integer.MIN_VALUE are stored correctly.
+     */
+    public void testMinValueHashCode() {
+	ProbingHashtableMap<Integer, String> testMap = new ProbingHashtableMap<>();
+	testMap.put(Integer.MIN_VALUE, "min");
+	Assertions.assertTrue(testMap.containsKey(Integer.MIN_VALUE));
+	Assertions.assertEquals("min", testMap.remove(Integer.MIN_VALUE));
+	Assertions.assertEquals(0, testMap.getSize());
+    }
+
+    @Test
+    /**
+     * Test that removing a key does not hide keys that probed past its slot.
+     */
+    public void testRemoveKeepsCollidingKeys() {
+	ProbingHashtableMap<Integer, String> testMap = ProbingHashtableMap.withCapacity(64);
+	// find keys that all start probing from the same slot
+	LinkedList<Integer> colliding = new LinkedList<>();
+	int slot = ProbingHashtableMap.spread(Integer.valueOf(0).hashCode()) & 63;
+	for (int i = 0; colliding.size() < 4; i++) {
+	    if ((ProbingHashtableMap.spread(Integer.valueOf(i).hashCode()) & 63) == slot) {
+		colliding.add(i);
+	    }
+	}
+	for (Integer key : colliding) {
+	    testMap.put(key, "v" + key);
+	}
+	testMap.remove(colliding.get(1));
+	Assertions.assertFalse(testMap.containsKey(colliding.get(1)));
+	Assertions.assertEquals("v" + colliding.get(3), testMap.get(colliding.get(3)));
+	testMap.put(colliding.get(1), "back");
+	Assertions.assertEquals("back", testMap.get(colliding.get(1)));
+	Assertions.assertEquals(4, testMap.getSize());
+	Assertions.assertEquals(4, testMap.getKeys().size());
+    }
+}
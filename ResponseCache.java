@@ -0,0 +1,178 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded cache of the pages sent in response to requests, by the normalized arguments of the
+ * request, which evicts the least recently used pages first. Each page is kept along with its
+ * gzip compressed body (when that is smaller) and a strong ETag for each of those bodies, all of
+ * which are computed once, when the page is added.
+ *
+ * Cached pages belong to one version of what they were made from (the graph and the template).
+ * Looking up or adding a page for a newer version first empties the cache, while looking up a page
+ * for an older version (by a request that started before a change) misses without touching the
+ * cache. All methods are synchronized, so one cache can be shared by the threads answering
+ * requests.
+ */
+public class ResponseCache {
+
+  // bytes counted for each entry beyond its bodies
+  protected static final int ENTRY_BYTES = 128;
+
+  /**
+   * A page, as sent with and without gzip compression.
+   */
+  public static class Page {
+    public final byte[] body;
+    public final String etag;
+    public final byte[] gzipped; // the compressed body, or null when compressing does not help
+    public final String gzippedEtag;
+
+    /**
+     * Compresses a page and computes its ETags.
+     *
+     * @param body the page, which must not be modified afterwards
+     */
+    public Page(byte[] body) {
+      this.body = body;
+      String hash = hash(body);
+      this.etag = '"' + hash + '"';
+      byte[] compressed = gzip(body);
+      this.gzipped = compressed.length < body.length ? compressed : null;
+      this.gzippedEtag = gzipped == null ? null : '"' + hash + "-gzip\"";
+    }
+
+    private int bytes() {
+      return ENTRY_BYTES + body.length + (gzipped == null ? 0 : gzipped.length);
+    }
+  }
+
+  // pages by normalized request, from least to most recently used
+  protected final LinkedHashMap<String, Page> entries = new LinkedHashMap<>(16, 0.75f, true);
+  protected long version = 0;
+  protected long maxBytes;
+  protected long bytes = 0;
+
+  protected long hits = 0;
+  protected long misses = 0;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxBytes the most bytes of pages the cache holds at once, or 0 to cache nothing
+   */
+  public ResponseCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Looks up the page for a request.
+   *
+   * @param version the current version of what pages are made from
+   * @param request the normalized arguments of the request
+   * @return the cached page, or null when none is cached for this version
+   */
+  public synchronized Page get(long version, String request) {
+    Page page = maxBytes == 0 || !checkVersion(version) ? null : entries.get(request);
+    if (page == null)
+      misses++;
+    else
+      hits++;
+    return page;
+  }
+
+  /**
+   * Adds the page for a request to the cache, evicting the least recently used pages while the
+   * cache holds too many bytes. The page is compressed and hashed before the cache is locked.
+   *
+   * @param version the version of what the page was made from
+   * @param request the normalized arguments of the request
+   * @param body    the page, which must not be modified afterwards
+   * @return the page, compressed and with its ETags
+   */
+  public Page put(long version, String request, byte[] body) {
+    Page page = new Page(body);
+    synchronized (this) {
+      if (version < this.version || page.bytes() > maxBytes)
+        return page; // made from something that has changed since, or too large to keep
+      checkVersion(version);
+      Page previous = entries.put(request, page);
+      if (previous != null)
+        bytes -= previous.bytes();
+      bytes += page.bytes();
+      Iterator<Map.Entry<String, Page>> eldest = entries.entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext()) {
+        bytes -= eldest.next().getValue().bytes();
+        eldest.remove();
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Removes every page from this cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * @return the number of pages cached
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of lookups that found a cached page
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that found no cached page
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  // empties the cache when what its pages were made from has changed, and returns whether its
+  // pages can be used for the provided version, which is false when it is older
+  private boolean checkVersion(long version) {
+    if (version > this.version) {
+      clear();
+      this.version = version;
+    }
+    return version == this.version;
+  }
+
+  // the first 128 bits of the SHA-256 hash of a page, in URL safe base 64
+  private static String hash(byte[] body) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every Java platform has SHA-256
+    }
+  }
+
+  private static byte[] gzip(byte[] body) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2 + 64);
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // not thrown by a ByteArrayOutputStream
+    }
+    return compressed.toByteArray();
+  }
+}
@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An HTML template that has been read and split once, around the first occurrence of each of its
+ * placeholders, into segments of static text that are already encoded as UTF-8. A page is written
+ * by sending each segment in turn with the value of the placeholder that followed it, so the
+ * template is neither read again nor searched for each page, and the length of the page is known
+ * before it is written. Placeholders that do not appear in the template are left out of its pages.
+ */
+public class Template {
+
+  // the text before, between and after the placeholders that were found
+  private final byte[][] segments;
+  // the index of the value written after each segment but the last
+  private final int[] slots;
+
+  private Template(byte[][] segments, int[] slots) {
+    this.segments = segments;
+    this.slots = slots;
+  }
+
+  /**
+   * Reads and splits a template. Lines are ended with a single newline, whatever they were ended
+   * with in the file.
+   *
+   * @param file         the template file
+   * @param placeholders the text replaced by each value passed to write, in the order of the values
+   * @return the template
+   * @throws IOException if the file cannot be read
+   */
+  public static Template load(Path file, String... placeholders) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+      text.append(line).append('\n');
+
+    // the placeholders found, in the order they appear
+    List<Integer> found = new ArrayList<>();
+    for (int slot = 0; slot < placeholders.length; slot++)
+      if (text.indexOf(placeholders[slot]) >= 0)
+        found.add(slot);
+    found.sort((a, b) -> Integer.compare(text.indexOf(placeholders[a]),
+        text.indexOf(placeholders[b])));
+
+    byte[][] segments = new byte[found.size() + 1][];
+    int[] slots = new int[found.size()];
+    int start = 0;
+    for (int i = 0; i < found.size(); i++) {
+      slots[i] = found.get(i);
+      int at = text.indexOf(placeholders[slots[i]], start);
+      segments[i] = text.substring(start, at).getBytes(StandardCharsets.UTF_8);
+      start = at + placeholders[slots[i]].length();
+    }
+    segments[found.size()] = text.substring(start).getBytes(StandardCharsets.UTF_8);
+    return new Template(segments, slots);
+  }
+
+  /**
+   * @param values the encoded value of each placeholder
+   * @return the number of bytes in the page with those values
+   */
+  public long length(byte[]... values) {
+    long length = 0;
+    for (byte[] segment : segments)
+      length += segment.length;
+    for (int slot : slots)
+      length += values[slot].length;
+    return length;
+  }
+
+  /**
+   * Writes the page with the provided values in place of the placeholders.
+   *
+   * @param out    the stream to write the page to
+   * @param values the encoded value of each placeholder
+   * @throws IOException if the page cannot be written
+   */
+  public void write(OutputStream out, byte[]... values) throws IOException {
+    for (int i = 0; i < slots.length; i++) {
+      out.write(segments[i]);
+      out.write(values[slots[i]]);
+    }
+    out.write(segments[slots.length]);
+  }
+
+  /**
+   * Loads a template again each time its file changes, on a daemon thread that watches the
+   * directory containing the file. A template that cannot be read after a change is reported and
+   * skipped, leaving the last one loaded in use.
+   *
+   * @param file         the template file
+   * @param reloaded     given each template loaded after a change
+   * @param placeholders the placeholders to split the template around
+   * @throws IOException if the directory cannot be watched
+   */
+  public static void watch(Path file, Consumer<Template> reloaded, String... placeholders)
+      throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path name = file.getFileName();
+    WatchService watcher = FileSystems.getDefault().newWatchService();
+    directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    Thread thread = new Thread(() -> {
+      try {
+        while (true) {
+          WatchKey key = watcher.take();
+          boolean changed = false;
+          for (WatchEvent<?> event : key.pollEvents())
+            changed |= name.equals(event.context());
+          key.reset();
+          if (!changed)
+            continue;
+          try {
+            reloaded.accept(load(file, placeholders));
+            System.out.println("Reloaded template " + file);
+          } catch (IOException e) {
+            System.out.println("Unable to reload template " + file + ": " + e.getMessage());
+          }
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        // stop watching
+      }
+    }, "template-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+}
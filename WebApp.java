@@ -5,13 +5,28 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.File;
-import java.util.Scanner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
 
 public class WebApp {
     public static void main(String[] args) throws IOException {
@@ -34,40 +49,181 @@ public class WebApp {
 						return;
 				}
 				
-				// configure and start server on this port, responding in this way
+				load("./campus.dot");
+				if(System.getProperty("webapp.server","httpserver").equals("nio"))
+						startNioServer(portNumber);
+				else
+						startServer(portNumber);
+    }
+
+    /**
+     * Loads the campus graph once into the backend and frontend shared by
+     * every request, and exercises it before accepting traffic.
+     * @param filename the dot file (or graph file) to load
+     * @throws IOException if the graph or the template cannot be read
+     */
+    public static void load(String filename) throws IOException {
+				System.out.println("Loading Campus Navigator graph...");
+				graph = new DijkstraGraph<>();
+				backend = createWorkingBackend(graph,filename,true);
+				frontend = new Frontend(backend);
+				warmUp(backend,frontend);
+				// split the template once, and keep the prompts, which only depend
+				// on the graph, encoded for every page
+				template = Template.load(TEMPLATE,RESPONSE_PLACEHOLDER,PROMPTS_PLACEHOLDER);
+				prompts = generatePromptHTML(frontend).getBytes(StandardCharsets.UTF_8);
+				if(Boolean.getBoolean("webapp.watchTemplate"))
+						Template.watch(TEMPLATE, reloaded -> {
+										template = reloaded;
+										templateVersion.incrementAndGet();
+								}, RESPONSE_PLACEHOLDER,PROMPTS_PLACEHOLDER);
+				ready = true;
+    }
+
+    /**
+     * Configures and starts a server on this port, responding with
+     * requestHandler. Since the loaded graph is shared and never modified,
+     * requests are answered concurrently on the threads chosen by these
+     * system properties:
+     * <ul>
+     * <li>webapp.executor: "virtual" for a virtual thread per request (on
+     * Java versions that have them, and a pool otherwise), "pool" for a
+     * bounded pool of platform threads (the default), or "dispatcher" to
+     * answer each request on the server's own thread, one at a time</li>
+     * <li>webapp.threads: the size of the pool, by default the number of
+     * processors</li>
+     * <li>webapp.queue: the number of requests that may wait for a pooled
+     * thread (1000 by default), beyond which the server's thread answers
+     * requests itself and stops accepting new connections until it is done</li>
+     * <li>webapp.backlog: the number of connections that may wait to be
+     * accepted (128 by default)</li>
+     * </ul>
+     * @param portNumber the port to bind the server to
+     * @return the started server
+     * @throws IOException if the server cannot be bound to the port
+     */
+    public static HttpServer startServer(int portNumber) throws IOException {
+				// send responses without waiting for the previous packet on the
+				// connection to be acknowledged, which otherwise adds the client's
+				// delayed acknowledgement (tens of milliseconds) to each request on
+				// a kept alive connection
+				if(System.getProperty("sun.net.httpserver.nodelay") == null)
+						System.setProperty("sun.net.httpserver.nodelay","true");
 				InetSocketAddress address = new InetSocketAddress(portNumber);
-				HttpServer server = HttpServer.create(address,8);
+				HttpServer server = HttpServer.create(address,
+						Integer.getInteger("webapp.backlog",128));
+				server.setExecutor(createExecutor(System.getProperty("webapp.executor","pool")));
 				HttpContext context = server.createContext("/");
 				context.setHandler( WebApp::requestHandler );
 				System.out.println("Starting Campus Navigator Server...");
 				server.start();
+				return server;
+    }
+
+    /**
+     * Starts a NioServer on this port instead, which answers requests with
+     * the same pages on event loops rather than on an executor. It has
+     * webapp.threads event loops (one per processor by default), and the
+     * same webapp.backlog.
+     * @param portNumber the port to bind the server to
+     * @return the started server
+     * @throws IOException if the server cannot be bound to the port
+     */
+    public static NioServer startNioServer(int portNumber) throws IOException {
+				System.out.println("Starting Campus Navigator Server (nio)...");
+				return NioServer.start(portNumber,Integer.getInteger("webapp.backlog",128),
+						Integer.getInteger("webapp.threads",Runtime.getRuntime().availableProcessors()),
+						WebApp::respond);
+    }
+
+    // creates the executor named by the webapp.executor system property, or
+    // null for the server's own dispatcher thread
+    private static Executor createExecutor(String kind) {
+				if(kind.equals("dispatcher"))
+						return null;
+				if(kind.equals("virtual")) {
+						// looked up by name, so this still compiles and runs on versions of
+						// Java without virtual threads
+						try {
+								return (Executor)Executors.class
+										.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+						} catch(ReflectiveOperationException e) {
+								System.out.println("Virtual threads are not available, using a pool");
+						}
+				} else if(!kind.equals("pool"))
+						throw new IllegalArgumentException("Unknown webapp.executor: " + kind);
+				int threads = Integer.getInteger("webapp.threads",
+						Runtime.getRuntime().availableProcessors());
+				AtomicInteger created = new AtomicInteger();
+				return new ThreadPoolExecutor(threads,threads,0,TimeUnit.MILLISECONDS,
+						new ArrayBlockingQueue<>(Integer.getInteger("webapp.queue",1000)),
+						task -> {
+								Thread thread = new Thread(task,"webapp-" + created.incrementAndGet());
+								thread.setDaemon(true);
+								return thread;
+						},
+						new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // backend (along with its graph) and frontend shared by every request,
+    // loaded once at startup and never modified while serving
+    private static DijkstraGraph<String,Double> graph = null;
+    private static BackendInterface backend = null;
+    private static FrontendInterface frontend = null;
+    // set once the shared frontend is loaded and warmed up
+    private static volatile boolean ready = false;
+
+    // the page template, with the text replaced by responses and by prompts
+    private static final Path TEMPLATE = Paths.get("template.html");
+    private static final String RESPONSE_PLACEHOLDER = "<!-- RESPONSE GOES HERE -->";
+    private static final String PROMPTS_PLACEHOLDER = "<!-- PROMPTS GO HERE -->";
+    // the split template (replaced when it is reloaded) and the encoded prompts
+    private static volatile Template template = null;
+    private static final AtomicLong templateVersion = new AtomicLong();
+    private static byte[] prompts = null;
+    // the div around each response
+    private static final byte[] RESPONSE_START =
+				"<div id=\"response\">".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE_END = "</div>".getBytes(StandardCharsets.UTF_8);
+
+    // pages already sent, by request and with their compressed bodies, for
+    // the current versions of the graph and the template, and how long
+    // browsers may use a page before asking whether it has changed
+    private static final ResponseCache pages = new ResponseCache(
+				Long.getLong("webapp.cacheBytes",16L << 20));
+    private static final String CACHE_CONTROL =
+				"public, max-age=" + Integer.getInteger("webapp.maxAge",60);
+
+    /**
+     * Reports whether the campus graph is loaded and this server is ready to
+     * answer requests.
+     * @return true after startup has loaded and warmed up the shared graph
+     */
+    public static boolean isReady() {
+				return ready;
     }
 
     // http request handler handler for the context "/"
     public static void requestHandler(HttpExchange exchange) {
 				try {
-						// extract the query (part of URI after?) part of URI
-						String query = exchange.getRequestURI().getQuery();	    
-						System.out.println("Received Request with query: " + query);
-						// extract argument key-value pairs from request query
-						Map<String,String> keyValuePairs = parseQuery(
-																					exchange.getRequestURI().getQuery());
-						System.out.println("Query includes args: "+keyValuePairs);
-	    
-						// create backend and frontend objects to respond to this request
-						FrontendInterface frontend = createWorkingFrontend("./campus.dot");
-						// compute answer to user's requested problem based on query args:
-						String response = generateResponseHTML(keyValuePairs,frontend);
-						// generate HTML prompts for user for make next requests
-						String prompts = generatePromptHTML(frontend);
-						// compose response and prompts into a complete html template
-						String html = composeHTML(response,prompts);
-		
-						// complete exchange response to send this html back to requester
-						byte[] bytes = html.getBytes();
-						exchange.sendResponseHeaders(200,bytes.length);
+						// extract the query (part of URI after?) part of URI, and write
+						// the page that answers it
+						ByteArrayOutputStream page = new ByteArrayOutputStream(4096);
+						Map<String,String> headers = new LinkedHashMap<>();
+						int status = respond(exchange.getRequestURI().getQuery(),
+								exchange.getRequestHeaders()::getFirst,headers,page);
+
+						// complete exchange response to send this html back to requester,
+						// in a single write so that it leaves in as few packets as it fits in
+						headers.forEach(exchange.getResponseHeaders()::set);
+						if(page.size() == 0) {
+								exchange.sendResponseHeaders(status,-1);
+								exchange.close();
+								return;
+						}
+						exchange.sendResponseHeaders(status,page.size());
 						OutputStream out = exchange.getResponseBody();
-						out.write(bytes);
+						page.writeTo(out);
 						out.close();
 	    
 				// unless something goes wrong, in which case report problem
@@ -80,6 +236,120 @@ public class WebApp {
 				}
     }
 
+    /**
+     * Answers a request with the html page for its query, which every server
+     * engine sends back with the returned status and headers. Pages are
+     * cached by the arguments that they depend on, for the current versions
+     * of the graph and the template, and sent gzip compressed to clients that
+     * accept that. Each page has a strong ETag, so that a client that already
+     * has the page is told so (with status 304) instead of sent it again.
+     * @param query the (decoded) query part of the request's URI, or null
+     * @param requestHeaders the value of each request header, by name, or
+     *        null for headers that were not sent
+     * @param responseHeaders where the headers of the response are put
+     * @param body the stream to write the body of the response to
+     * @return the http status of the response: 200 with the page, 304 with no
+     *         page when the client has it already, or 503 with no page while
+     *         the graph is still loading
+     * @throws IOException if the page cannot be written
+     * @throws IllegalArgumentException if the query cannot be parsed
+     */
+    public static int respond(String query, Function<String,String> requestHeaders,
+															Map<String,String> responseHeaders, OutputStream body)
+				throws IOException {
+				System.out.println("Received Request with query: " + query);
+				// extract argument key-value pairs from request query
+				Map<String,String> keyValuePairs = parseQuery(query);
+				System.out.println("Query includes args: "+keyValuePairs);
+
+				// refuse requests until the shared graph has been loaded
+				if(!ready) {
+						responseHeaders.put("Cache-Control","no-store");
+						return 503;
+				}
+				// find the page for these arguments, or compute answer to user's
+				// requested problem based on them and send the template around the
+				// response and the prompts for the user's next requests
+				long version = graph.getVersion() + templateVersion.get();
+				String request = normalize(keyValuePairs);
+				ResponseCache.Page page = pages.get(version,request);
+				if(page == null) {
+						ByteArrayOutputStream response = new ByteArrayOutputStream(4096);
+						writeResponseHTML(keyValuePairs,frontend,response);
+						ByteArrayOutputStream html = new ByteArrayOutputStream(8192);
+						template.write(html,response.toByteArray(),prompts);
+						page = pages.put(version,request,html.toByteArray());
+				}
+
+				boolean gzip = page.gzipped != null
+						&& acceptsGzip(requestHeaders.apply("Accept-Encoding"));
+				String etag = gzip ? page.gzippedEtag : page.etag;
+				responseHeaders.put("ETag",etag);
+				responseHeaders.put("Cache-Control",CACHE_CONTROL);
+				responseHeaders.put("Vary","Accept-Encoding");
+				if(matches(requestHeaders.apply("If-None-Match"),etag))
+						return 304;
+				responseHeaders.put("Content-Type","text/html; charset=utf-8");
+				if(gzip)
+						responseHeaders.put("Content-Encoding","gzip");
+				body.write(gzip ? page.gzipped : page.body);
+				return 200;
+    }
+
+    // the arguments that a page depends on, in a fixed order
+    private static String normalize(Map<String,String> keyValuePairs) {
+				if(keyValuePairs.containsKey("start") && keyValuePairs.containsKey("end"))
+						return "start=" + keyValuePairs.get("start") + "&end=" +
+								keyValuePairs.get("end");
+				if(keyValuePairs.containsKey("from"))
+						return "from=" + keyValuePairs.get("from");
+				return "";
+    }
+
+    // whether an Accept-Encoding header allows gzip (with a non-zero quality),
+    // by name or else through "*", which only covers codings it does not name
+    private static boolean acceptsGzip(String acceptEncoding) {
+				if(acceptEncoding == null) return false;
+				boolean any = false;
+				for(String coding : acceptEncoding.split(",")) {
+						String[] parts = coding.trim().split(";");
+						String name = parts[0].trim().toLowerCase();
+						if(name.equals("gzip") || name.equals("x-gzip"))
+								return quality(parts) > 0;
+						if(name.equals("*"))
+								any = quality(parts) > 0;
+				}
+				return any;
+    }
+
+    // the quality (q parameter) of an Accept-Encoding entry split at its
+    // semicolons, which is 1 when it is left out and 0 when it is unreadable
+    private static double quality(String[] parts) {
+				for(int i = 1; i < parts.length; i++) {
+						String parameter = parts[i].trim().toLowerCase();
+						if(parameter.startsWith("q=")) {
+								try {
+										return Double.parseDouble(parameter.substring(2));
+								} catch(NumberFormatException e) {
+										return 0;
+								}
+						}
+				}
+				return 1;
+    }
+
+    // whether an If-None-Match header lists an ETag, comparing them weakly as
+    // that header requires
+    private static boolean matches(String ifNoneMatch, String etag) {
+				if(ifNoneMatch == null) return false;
+				for(String tag : ifNoneMatch.split(",")) {
+						tag = tag.trim();
+						if(tag.startsWith("W/")) tag = tag.substring(2);
+						if(tag.equals("*") || tag.equals(etag)) return true;
+				}
+				return false;
+    }
+
     // reads key value pairs from the query string of a URI into a map
     private static Map<String,String> parseQuery(String query) {
 				HashMap<String,String> map = new HashMap<>();
@@ -95,33 +365,105 @@ public class WebApp {
 				return map;
     }
 
-    // creates a working Frontend, Backend, DijkstraGraph, and HashtableMap
-    private static FrontendInterface createWorkingFrontend(String filename) throws IOException {
-				GraphADT<String,Double> graph = new DijkstraGraph<>();
+    // creates a working Backend and DijkstraGraph (whose nodes are kept in a
+    // ProbingHashtableMap) loaded with the graph data from filename, where
+    // identical requests that arrive while one is being answered share its
+    // answer; only the long running server saves copies of the graph and
+    // landmarks next to filename, since the web server's user usually cannot
+    // write there, and a cgi invocation only reads the copies it finds
+    private static BackendInterface createWorkingBackend(DijkstraGraph<String,Double> graph,
+																												 String filename, boolean saveCopies) throws IOException {
 				BackendInterface backend = new Backend(graph);
-				backend.loadGraphData(filename);			
-				FrontendInterface frontend = new Frontend(backend);
-				return frontend;
+				loadGraph(backend,graph,filename,saveCopies);
+				// small graphs answer routes from all pairs distance tables, and
+				// larger ones with landmarks kept in a file next to the graph's,
+				// so that they are only computed again when the graph changes
+				if (graph.snapshot().getNodeCount() > graph.getAllPairsLimit()) {
+						Path landmarks = Paths.get(filename + ".landmarks");
+						if(saveCopies)
+								graph.setLandmarks(LandmarkIndex.loadOrBuild(graph.snapshot(),landmarks,8));
+						else try {
+								LandmarkIndex saved = LandmarkIndex.load(landmarks);
+								if(saved.isFor(graph.snapshot())) graph.setLandmarks(saved);
+						} catch(IOException e) {} // the graph selects its own landmarks
+						graph.setQueryMode(DijkstraGraph.QueryMode.ALT);
+				}
+				return new CoalescingBackend(backend);
     }
 
-    // creates the html response for the kind of question requeted (if any)
-    private static String generateResponseHTML(Map<String,String> keyValuePairs, FrontendInterface frontend) {
-				// compute response for shortest path request
-				String response = "<div id=\"response\">";
+    // loads the graph from a binary copy of filename kept next to it, which is
+    // memory mapped (and shared between processes) rather than parsed, and
+    // (when saveCopy is true) writes that copy from the dot file whenever it
+    // is missing or older
+    private static void loadGraph(BackendInterface backend, DijkstraGraph<String,Double> graph,
+																	String filename, boolean saveCopy) throws IOException {
+				Path binary = Paths.get(filename + ".graph");
+				try {
+						if(Files.getLastModifiedTime(binary).compareTo(
+											 Files.getLastModifiedTime(Paths.get(filename))) >= 0) {
+								backend.loadGraphData(binary.toString());
+								return;
+						}
+				} catch(IOException e) {} // a missing or unreadable copy is replaced below
+				backend.loadGraphData(filename);
+				if(!saveCopy) return;
+				try {
+						MappedGraph.write(graph.snapshot(),binary);
+				} catch(IOException e) {
+						System.err.println("Unable to save graph to "+binary+": "+e.getMessage());
+				}
+    }
+
+    // creates a working Frontend, Backend, DijkstraGraph, and ProbingHashtableMap
+    private static FrontendInterface createWorkingFrontend(String filename) throws IOException {
+				return new Frontend(createWorkingBackend(new DijkstraGraph<>(),filename,false));
+    }
+
+    // runs one query of each kind against a freshly loaded frontend, so that
+    // the classes and code paths used to answer requests are loaded and
+    // compiled before the first real request arrives
+    private static void warmUp(BackendInterface backend, FrontendInterface frontend) {
+				List<String> locations = backend.getListOfAllLocations();
+				if(locations.isEmpty()) return;
+				String first = locations.get(0);
+				String last = locations.get(locations.size()-1);
+				try {
+						OutputStream ignored = OutputStream.nullOutputStream();
+						writeResponseHTML(Map.of("start",first,"end",last),frontend,ignored);
+						writeResponseHTML(Map.of("from",first),frontend,ignored);
+				} catch(NoSuchElementException e) { // unreachable pairs are fine here
+				} catch(IOException e) {} // not thrown by the null stream
+				generatePromptHTML(frontend);
+    }
+
+    // writes the html response for the kind of question requeted (if any),
+    // streamed straight from frontends that can write their responses
+    private static void writeResponseHTML(Map<String,String> keyValuePairs,
+																					FrontendInterface frontend, OutputStream out)
+				throws IOException {
+				out.write(RESPONSE_START);
+				// write response for shortest path request
 				if(keyValuePairs.containsKey("start") &&
 					 keyValuePairs.containsKey("end")) {
-						response += frontend.generateShortestPathResponseHTML(
-						            keyValuePairs.get("start"),
-												keyValuePairs.get("end")) + "</div>";
-						// compute response for other request
+						String start = keyValuePairs.get("start");
+						String end = keyValuePairs.get("end");
+						if(frontend instanceof StreamingFrontendInterface)
+								((StreamingFrontendInterface)frontend).writeShortestPathResponseHTML(
+										start,end,out);
+						else
+								out.write(frontend.generateShortestPathResponseHTML(start,end)
+													.getBytes(StandardCharsets.UTF_8));
+						// write response for other request
 				} else if(keyValuePairs.containsKey("from")) {
-						response += frontend.generateTenClosestDestinationsResponseHTML(
-												keyValuePairs.get("from")) + "</div>";
-						// otherwise, leave response div blank 
-				} else
-						response += "</div>";
-
-				return response;
+						String from = keyValuePairs.get("from");
+						if(frontend instanceof StreamingFrontendInterface)
+								((StreamingFrontendInterface)frontend)
+										.writeTenClosestDestinationsResponseHTML(from,out);
+						else
+								out.write(frontend.generateTenClosestDestinationsResponseHTML(from)
+													.getBytes(StandardCharsets.UTF_8));
+				} // otherwise, leave response div blank
+				out.write(RESPONSE_END);
     }
 
     // generate separate div sections with a prompt for each kind of request
@@ -133,20 +475,6 @@ public class WebApp {
 				return firstPrompt + secondPrompt;
     }
 
-    // compose reponse with prompts inside a complete html tree
-    private static String composeHTML(String response, String prompts) throws IOException {
-				// read contents of template file into html string
-				String html = "";
-				Scanner in = new Scanner(new File("template.html"));
-				while(in.hasNextLine()) html += in.nextLine() + "\n";
-
-				// replace placeholders for response and prompts
-				html = html.replaceFirst("<!-- RESPONSE GOES HERE -->",response);
-				html = html.replaceFirst("<!-- PROMPTS GO HERE -->",prompts);
-	
-				return html;
-    }
-
 		// Since we cannot run a public webserver on the department's linux
 		// machines, we are using a cgi script to pass the query argument to
 		// the method below, and then displaying a response to standard out.
@@ -158,13 +486,15 @@ public class WebApp {
 						// create backend and frontend objects to respond to this request
 						FrontendInterface frontend = createWorkingFrontend("./campus.dot");
 						// compute answer to user's requested problem based on query args:
-						String response = generateResponseHTML(keyValuePairs,frontend);
+						ByteArrayOutputStream response = new ByteArrayOutputStream(4096);
+						writeResponseHTML(keyValuePairs,frontend,response);
 						// generate HTML prompts for user for make next requests
 						String prompts = generatePromptHTML(frontend);
-						// compose response and prompts into a complete html template
-						String html = composeHTML(response,prompts);
-		
-						System.out.println(html);
+						// write response and prompts inside the html template
+						Template.load(TEMPLATE,RESPONSE_PLACEHOLDER,PROMPTS_PLACEHOLDER).write(
+								System.out,response.toByteArray(),
+								prompts.getBytes(StandardCharsets.UTF_8));
+						System.out.println();
 						
 				// unless something goes wrong, in which case report problem
 				} catch (Exception e) {
@@ -172,4 +502,113 @@ public class WebApp {
 						e.printStackTrace();
 				}
     }
+
+    @Test
+    public void responseCacheTest() {
+				// each page keeps its gzip compressed body, when that is smaller, and
+				// a strong ETag for each body
+				byte[] html = "<p>Union South</p>\n".repeat(100).getBytes(StandardCharsets.UTF_8);
+				ResponseCache.Page page = new ResponseCache.Page(html);
+				Assertions.assertNotNull(page.gzipped);
+				Assertions.assertTrue(page.gzipped.length < html.length);
+				try(java.util.zip.GZIPInputStream in = new java.util.zip.GZIPInputStream(
+								new java.io.ByteArrayInputStream(page.gzipped))) {
+						Assertions.assertArrayEquals(html,in.readAllBytes());
+				} catch(IOException e) {
+						Assertions.fail(e);
+				}
+				Assertions.assertTrue(page.etag.startsWith("\"") && page.etag.endsWith("\""));
+				Assertions.assertEquals(page.etag.substring(0,page.etag.length()-1)+"-gzip\"",
+						page.gzippedEtag);
+				Assertions.assertEquals(page.etag,new ResponseCache.Page(html.clone()).etag);
+				Assertions.assertNotEquals(page.etag,new ResponseCache.Page(new byte[] {1}).etag);
+				// pages too short to compress are only kept as they are
+				ResponseCache.Page small = new ResponseCache.Page(new byte[] {1,2,3});
+				Assertions.assertNull(small.gzipped);
+				Assertions.assertNull(small.gzippedEtag);
+
+				// the least recently used pages are evicted once the cache holds too
+				// many bytes, and pages larger than the whole cache are not kept
+				ResponseCache cache = new ResponseCache(2 * (ResponseCache.ENTRY_BYTES + 3));
+				cache.put(1,"a",new byte[] {1,2,3});
+				cache.put(1,"b",new byte[] {4,5,6});
+				Assertions.assertNotNull(cache.get(1,"a"));
+				cache.put(1,"c",new byte[] {7,8,9});
+				Assertions.assertEquals(2,cache.size());
+				Assertions.assertNull(cache.get(1,"b"));
+				Assertions.assertNotNull(cache.get(1,"a"));
+				Assertions.assertNotNull(cache.get(1,"c"));
+				Assertions.assertNotNull(cache.put(1,"d",html));
+				Assertions.assertNull(cache.get(1,"d"));
+				Assertions.assertEquals(3,cache.getHitCount());
+				Assertions.assertEquals(2,cache.getMissCount());
+
+				// a newer version empties the cache, while an older one misses
+				// without emptying it, and pages made for it are not kept
+				Assertions.assertNull(cache.get(0,"a"));
+				Assertions.assertEquals(2,cache.size());
+				Assertions.assertNull(cache.get(2,"a"));
+				Assertions.assertEquals(0,cache.size());
+				cache.put(1,"a",new byte[] {1,2,3});
+				Assertions.assertEquals(0,cache.size());
+				cache.put(2,"a",new byte[] {1,2,3});
+				Assertions.assertNotNull(cache.get(2,"a"));
+    }
+
+    @Test
+    public void requestHeadersTest() {
+				Assertions.assertFalse(acceptsGzip(null));
+				Assertions.assertTrue(acceptsGzip("gzip"));
+				Assertions.assertTrue(acceptsGzip("deflate, gzip;q=0.5, br"));
+				Assertions.assertTrue(acceptsGzip("x-gzip"));
+				Assertions.assertFalse(acceptsGzip("deflate, br"));
+				Assertions.assertFalse(acceptsGzip("gzip;q=0"));
+				Assertions.assertFalse(acceptsGzip("GZIP; Q=0.000"));
+				Assertions.assertFalse(acceptsGzip("gzip;q=none"));
+				// "*" covers gzip unless gzip is named
+				Assertions.assertTrue(acceptsGzip("*"));
+				Assertions.assertFalse(acceptsGzip("*;q=0"));
+				Assertions.assertFalse(acceptsGzip("gzip;q=0, *"));
+				Assertions.assertTrue(acceptsGzip("*;q=0, gzip"));
+
+				String etag = "\"abc\"";
+				Assertions.assertFalse(matches(null,etag));
+				Assertions.assertTrue(matches(etag,etag));
+				Assertions.assertTrue(matches("W/\"abc\"",etag));
+				Assertions.assertTrue(matches("\"xyz\", W/\"abc\"",etag));
+				Assertions.assertTrue(matches("*",etag));
+				Assertions.assertFalse(matches("\"abc-gzip\"",etag));
+				Assertions.assertFalse(matches("abc",etag));
+    }
+
+    @Test
+    public void templateTest() throws IOException {
+				Path file = Files.createTempFile("template",".html");
+				try {
+						// placeholders are found wherever they are in the template, and
+						// lines end with a newline whatever they ended with in the file
+						Files.writeString(file,"<p>{second}</p>\r\n<b>{first}</b>",
+								StandardCharsets.UTF_8);
+						Template template = Template.load(file,"{first}","{missing}","{second}");
+						// values are written as they are, whatever characters they hold
+						byte[][] values = {"$1 \\n".getBytes(StandardCharsets.UTF_8),
+								"left out".getBytes(StandardCharsets.UTF_8),
+								"caf\u00e9 $".getBytes(StandardCharsets.UTF_8)};
+						ByteArrayOutputStream page = new ByteArrayOutputStream();
+						template.write(page,values);
+						Assertions.assertEquals("<p>caf\u00e9 $</p>\n<b>$1 \\n</b>\n",
+								page.toString(StandardCharsets.UTF_8));
+						Assertions.assertEquals(page.size(),template.length(values));
+
+						// a template without any of its placeholders is written whole
+						Files.writeString(file,"<p>none</p>",StandardCharsets.UTF_8);
+						template = Template.load(file,"{first}");
+						page.reset();
+						template.write(page,values[0]);
+						Assertions.assertEquals("<p>none</p>\n",page.toString(StandardCharsets.UTF_8));
+						Assertions.assertEquals(page.size(),template.length(values[0]));
+				} finally {
+						Files.delete(file);
+				}
+    }
 }
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures how many requests per second the WebApp server answers with each kind of executor, as
+ * the number of clients sending requests at the same time grows. Each client sends requests for
+ * routes and closest destinations between random locations one after another, over a kept alive
+ * connection, so with the shared read-only graph the throughput of the pooled and virtual thread
+ * executors should grow with the number of clients up to the number of processors, while the
+ * dispatcher answers one request at a time.
+ *
+ * It then compares the built-in HttpServer (with a pool) with the NioServer engine as the number
+ * of open connections grows into the thousands, with a single client thread that waits on a
+ * selector for the responses on every connection and sends each connection's next request as soon
+ * as its response arrives.
+ * Run with: java WebAppLoadTest [campus.dot] [seconds per measurement] [most clients]
+ *           [most connections]
+ */
+public class WebAppLoadTest {
+
+  private static final String[] EXECUTORS = {"dispatcher", "pool", "virtual"};
+  private static final int QUERIES = 1000;
+
+  private static final PrintStream report = System.out;
+
+  public static void main(String[] args) throws Exception {
+    String filename = args.length > 0 ? args[0] : "campus.dot";
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int processors = Runtime.getRuntime().availableProcessors();
+    int mostClients = args.length > 2 ? Integer.parseInt(args[2]) : 4 * processors;
+    int mostConnections = args.length > 3 ? Integer.parseInt(args[3]) : 4000;
+
+    // the server logs every request (and every client that leaves before its response is
+    // written), which is left out of the report
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    WebApp.load(filename);
+    BackendInterface backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData(filename);
+    String[] queries = randomQueries(backend.getListOfAllLocations(), new Random(QUERIES));
+
+    report.println(filename + ", " + seconds + " s per measurement with " + processors
+        + " processors");
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    for (String executor : EXECUTORS) {
+      System.setProperty("webapp.executor", executor);
+      HttpServer server = WebApp.startServer(0);
+      try {
+        URI base = URI.create("http://localhost:" + server.getAddress().getPort() + "/?");
+        measure(client, base, queries, processors, 1); // warm up
+        double single = 0;
+        for (int clients = 1; clients <= mostClients; clients *= 2) {
+          double perSecond = measure(client, base, queries, clients, seconds);
+          if (clients == 1)
+            single = perSecond;
+          report.printf("  %-10s %4d clients: %10.1f requests/s (%.2fx)%n", executor, clients,
+              perSecond, perSecond / single);
+        }
+      } finally {
+        server.stop(0);
+      }
+    }
+
+    // enough room for every connection to wait to be accepted
+    System.setProperty("webapp.backlog", Integer.toString(mostConnections));
+    System.setProperty("webapp.executor", "pool");
+    for (String engine : new String[] {"httpserver", "nio"}) {
+      HttpServer server = null;
+      NioServer nio = null;
+      int port;
+      if (engine.equals("nio")) {
+        nio = WebApp.startNioServer(0);
+        port = nio.getPort();
+      } else {
+        server = WebApp.startServer(0);
+        port = server.getAddress().getPort();
+      }
+      try {
+        measureConnections(port, queries, processors, 1); // warm up
+        for (int connections = 10; connections <= mostConnections; connections *= 10) {
+          report.printf("  %-10s %5d connections: %10.1f requests/s%n", engine, connections,
+              measureConnections(port, queries, connections, seconds));
+          if (connections < mostConnections && connections * 10 > mostConnections)
+            connections = mostConnections / 10;
+        }
+      } finally {
+        if (nio != null)
+          nio.stop();
+        else
+          server.stop(0);
+      }
+    }
+  }
+
+  // requests for a route or for the closest destinations, between random locations (other than
+  // those whose names contain '&' or '=', which the server cannot tell apart from its arguments)
+  private static String[] randomQueries(List<String> allLocations, Random random) {
+    List<String> locations = allLocations.stream()
+        .filter(location -> location.indexOf('&') < 0 && location.indexOf('=') < 0).toList();
+    String[] queries = new String[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      String start = encode(locations.get(random.nextInt(locations.size())));
+      String end = encode(locations.get(random.nextInt(locations.size())));
+      queries[i] = i % 4 == 0 ? "from=" + start : "start=" + start + "&end=" + end;
+    }
+    return queries;
+  }
+
+  private static String encode(String location) {
+    return URLEncoder.encode(location, StandardCharsets.UTF_8).replace("+", "%20");
+  }
+
+  // sends requests from the provided number of clients for the provided number of seconds, and
+  // returns the number of successful requests per second
+  private static double measure(HttpClient client, URI base, String[] queries, int clients,
+      int seconds) throws InterruptedException {
+    LongAdder answered = new LongAdder();
+    LongAdder failed = new LongAdder();
+    long end = System.nanoTime() + seconds * 1_000_000_000L;
+    Thread[] threads = new Thread[clients];
+    for (int c = 0; c < clients; c++) {
+      int first = c * 7919;
+      threads[c] = new Thread(() -> {
+        for (int i = first; System.nanoTime() < end; i++) {
+          HttpRequest request =
+              HttpRequest.newBuilder(base.resolve("?" + queries[i % QUERIES])).build();
+          try {
+            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200)
+              answered.increment();
+            else
+              failed.increment();
+          } catch (IOException e) {
+            failed.increment();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      });
+      threads[c].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    if (failed.sum() > 0)
+      throw new IllegalStateException(failed.sum() + " requests failed");
+    return answered.sum() / (double) seconds;
+  }
+
+  // the state of each connection the client keeps open
+  private static class Connection {
+    final ByteBuffer response = ByteBuffer.allocate(16384);
+    ByteBuffer request;
+    int next;
+  }
+
+  // opens the provided number of connections, then sends requests on all of them for the
+  // provided number of seconds, one at a time on each, and returns the number of successful
+  // requests per second
+  private static double measureConnections(int port, String[] queries, int connections,
+      int seconds) throws IOException {
+    byte[][] requests = new byte[QUERIES][];
+    for (int i = 0; i < QUERIES; i++)
+      requests[i] = ("GET /?" + queries[i] + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+          .getBytes(StandardCharsets.ISO_8859_1);
+    long answered = 0;
+    int refused = 0;
+    int closed = 0;
+    try (Selector selector = Selector.open()) {
+      InetSocketAddress address = new InetSocketAddress("localhost", port);
+      for (int c = 0; c < connections; c++) {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(address);
+        Connection connection = new Connection();
+        connection.next = c * 7919;
+        channel.register(selector, SelectionKey.OP_CONNECT, connection);
+      }
+      // wait for every connection to open before starting the clock
+      for (int open = 0; open < connections;) {
+        selector.select();
+        for (SelectionKey key : selector.selectedKeys()) {
+          open++;
+          try {
+            ((SocketChannel) key.channel()).finishConnect();
+            key.interestOps(0);
+          } catch (IOException e) {
+            refused++;
+            key.cancel();
+            key.channel().close();
+          }
+        }
+        selector.selectedKeys().clear();
+      }
+      for (SelectionKey key : selector.keys())
+        if (key.isValid())
+          send(key, requests);
+
+      long end = System.nanoTime() + seconds * 1_000_000_000L;
+      while (System.nanoTime() < end) {
+        selector.select(100);
+        for (SelectionKey key : selector.selectedKeys()) {
+          SocketChannel channel = (SocketChannel) key.channel();
+          Connection connection = (Connection) key.attachment();
+          if (key.isWritable()) {
+            send(key, requests);
+            continue;
+          }
+          int read;
+          try {
+            read = channel.read(connection.response);
+          } catch (IOException e) {
+            read = -1; // reset by the server
+          }
+          if (read < 0) {
+            // closed by the server, which is counted against it
+            closed++;
+            key.cancel();
+            channel.close();
+            continue;
+          }
+          if (received(connection.response)) {
+            answered++;
+            connection.response.clear();
+            send(key, requests);
+          }
+        }
+        selector.selectedKeys().clear();
+      }
+      for (SelectionKey key : selector.keys())
+        key.channel().close();
+    }
+    if (refused + closed > 0)
+      report.println("  (of " + connections + " connections, " + refused + " could not be "
+          + "opened and " + closed + " were closed by the server)");
+    return answered / (double) seconds;
+  }
+
+  // sends (the rest of) the next request on a connection
+  private static void send(SelectionKey key, byte[][] requests) throws IOException {
+    Connection connection = (Connection) key.attachment();
+    if (connection.request == null || !connection.request.hasRemaining())
+      connection.request = ByteBuffer.wrap(requests[connection.next++ % QUERIES]);
+    ((SocketChannel) key.channel()).write(connection.request);
+    key.interestOps(connection.request.hasRemaining() ? SelectionKey.OP_WRITE
+        : SelectionKey.OP_READ);
+  }
+
+  // whether a whole response has been received, which must be successful
+  private static boolean received(ByteBuffer response) {
+    String head = new String(response.array(), 0, response.position(),
+        StandardCharsets.ISO_8859_1);
+    int headEnd = head.indexOf("\r\n\r\n");
+    if (headEnd < 0)
+      return false;
+    if (!head.startsWith("HTTP/1.1 200"))
+      throw new IllegalStateException("Request failed: " + head.substring(0, head.indexOf('\r')));
+    int at = head.toLowerCase().indexOf("content-length:") + "content-length:".length();
+    int length = Integer.parseInt(head.substring(at, head.indexOf('\r', at)).trim());
+    return response.position() >= headEnd + 4 + length;
+  }
+}